@@ -0,0 +1,149 @@
+package com.n26.controllers;
+
+import com.n26.Application;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Runs a servlet node which ticks every millisecond and writes streams from a pool of one core thread,
+ * then subscribes clients which never read, so that writing to them blocks once the socket buffers are
+ * full. The node runs in this JVM, so the tests tell which writers are blocked from their stacks.
+ */
+public class StatisticStreamIT {
+
+    private static final int STALLED_CLIENTS = 4;
+    private static final long FILL_TIMEOUT_MILLIS = 60_000L;
+    private static final long BLOCKED_MILLIS = 2_000L;
+    private static final int READ_MILLIS = 500;
+    private static final int DROP_TIMEOUT_MILLIS = 5_000;
+
+    private final List<Socket> clients = new ArrayList<>();
+    private ConfigurableApplicationContext node;
+
+    @After
+    public void stopNode() throws IOException {
+        for(Socket client : clients){
+            client.close();
+        }
+        node.close();
+    }
+
+    @Test
+    public void streamStatistics_whenClientsStallWriters_shouldKeepStreamingToOthers() throws Exception {
+        startNode(16);
+        for(int i = 0; i < STALLED_CLIENTS; i++){
+            subscribe();
+        }
+        awaitBlockedWriters(STALLED_CLIENTS);
+
+        Socket reader = subscribe();
+        reader.setSoTimeout(READ_MILLIS);
+        BufferedReader events = new BufferedReader(new InputStreamReader(reader.getInputStream(), StandardCharsets.UTF_8));
+        int received = 0;
+        long deadline = System.currentTimeMillis() + READ_MILLIS;
+        while(System.currentTimeMillis() < deadline){
+            if("event:statistic".equals(events.readLine())){
+                received++;
+            }
+        }
+        assertThat(received, greaterThan(10));
+    }
+
+    @Test
+    public void streamStatistics_whenEveryWriterIsBlocked_shouldDropNewClients() throws Exception {
+        startNode(1);
+        subscribe();
+        awaitBlockedWriters(1);
+
+        assertThat(isDropped(subscribe()), is(true));
+    }
+
+    private void startNode(int writers) {
+        node = Application.run("--server.port=0",
+                "--statistics.stream.interval-ms=1",
+                "--statistics.stream.threads=1",
+                "--statistics.stream.max-threads=" + writers);
+    }
+
+    /**
+     * Waits until the writers stay blocked for a while, as the socket buffers of a stalled client may
+     * still grow and let a write through after it first blocks.
+     */
+    private static void awaitBlockedWriters(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + FILL_TIMEOUT_MILLIS;
+        long blockedSince = Long.MAX_VALUE;
+        while(System.currentTimeMillis() - blockedSince < BLOCKED_MILLIS){
+            assertThat("blocked writers", System.currentTimeMillis(), lessThan(deadline));
+            if(blockedWriters() < count){
+                blockedSince = Long.MAX_VALUE;
+            } else if(blockedSince == Long.MAX_VALUE){
+                blockedSince = System.currentTimeMillis();
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static long blockedWriters() {
+        return Thread.getAllStackTraces().entrySet().stream()
+                .filter(thread -> thread.getKey().getName().startsWith("statistic-stream-"))
+                .filter(thread -> Arrays.stream(thread.getValue())
+                        .anyMatch(frame -> frame.getClassName().equals("org.apache.tomcat.util.net.NioBlockingSelector")))
+                .count();
+    }
+
+    /**
+     * Subscribes a client which only reads when told to. It asks to close the connection with the
+     * response, so a dropped stream ends it.
+     */
+    private Socket subscribe() throws IOException {
+        Socket client = new Socket();
+        client.setReceiveBufferSize(1024);
+        client.connect(new InetSocketAddress("localhost", Integer.parseInt(node.getEnvironment().getProperty("local.server.port"))));
+        client.getOutputStream().write(("GET /statistics/stream HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Connection: close\r\n"
+                + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Reads the stream until it ends. A client still subscribed keeps receiving events every tick, so it
+     * never gets there.
+     */
+    private static boolean isDropped(Socket client) throws IOException {
+        client.setSoTimeout(DROP_TIMEOUT_MILLIS);
+        long deadline = System.currentTimeMillis() + DROP_TIMEOUT_MILLIS;
+        InputStream input = client.getInputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            while(input.read(buffer) >= 0){
+                if(System.currentTimeMillis() > deadline){
+                    return false;
+                }
+            }
+            return true;
+        } catch(SocketTimeoutException e) {
+            return false;
+        } catch(IOException e) {
+            return true;
+        }
+    }
+
+}
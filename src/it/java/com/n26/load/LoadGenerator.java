@@ -0,0 +1,328 @@
+package com.n26.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.entities.Statistic;
+import org.HdrHistogram.Histogram;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Drives a running service over HTTP in rounds. During a round every worker issues its share of
+ * {@code load.rate} on a fixed schedule, picking single posts, batches and statistics by their weights.
+ * Latencies are measured from the time each request was scheduled rather than sent, so a stalled
+ * service is charged for the requests it held back too. Between rounds, once the service is idle, the
+ * statistic is checked against the {@link ReferenceModel} and the transactions are deleted.
+ * <p>
+ * Timestamps cluster around both edges of the window, where transactions flip between accepted, too old
+ * and in the future while in flight.
+ */
+final class LoadGenerator {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private static final long MAX_AMOUNT_IN_CENTS = 1_000_000L;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * Time left to the service after a round to publish the statistic of its last transactions.
+     */
+    private static final long QUIESCE_MILLIS = 100L;
+
+    private final String baseUrl;
+    private final LoadProfile profile;
+    private final ReferenceModel model = new ReferenceModel();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    private long operations;
+    private long elapsedNanos;
+
+    LoadGenerator(String baseUrl, LoadProfile profile) {
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        this.restTemplate.setErrorHandler(new AcceptingErrorHandler());
+
+        for(Operation operation : Operation.values()){
+            histograms.put(operation, new Histogram(HIGHEST_LATENCY_MICROS, 3));
+        }
+    }
+
+    /**
+     * Runs rounds for {@code load.warmup-seconds}, whose latencies are discarded, then until
+     * {@code load.seconds} have elapsed.
+     */
+    void run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(profile.getWorkers());
+
+        try {
+            deleteTransactions();
+            runRounds(executor, profile.getWarmupSeconds());
+
+            histograms.values().forEach(Histogram::reset);
+            operations = 0;
+            elapsedNanos = 0;
+
+            runRounds(executor, profile.getSeconds());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    Map<Operation, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Requests completed per second of the rounds, statistic checks and deletes aside.
+     */
+    double getThroughput() {
+        return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+    }
+
+    private void runRounds(ExecutorService executor, int seconds) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        while(System.nanoTime() < end){
+            runRound(executor);
+            Thread.sleep(QUIESCE_MILLIS);
+            checkStatistic();
+            deleteTransactions();
+        }
+    }
+
+    private void runRound(ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(profile.getRoundMillis());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(profile.getWorkers()) / Math.max(1, profile.getRate());
+
+        List<Future<Map<Operation, Histogram>>> workers = new ArrayList<>();
+        for(int worker = 0; worker < profile.getWorkers(); worker++){
+            long first = start + intervalNanos * worker / profile.getWorkers();
+            workers.add(executor.submit(() -> work(first, end, intervalNanos)));
+        }
+
+        for(Future<Map<Operation, Histogram>> worker : workers){
+            for(Map.Entry<Operation, Histogram> histogram : worker.get().entrySet()){
+                histograms.get(histogram.getKey()).add(histogram.getValue());
+                operations += histogram.getValue().getTotalCount();
+            }
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    private Map<Operation, Histogram> work(long first, long end, long intervalNanos) {
+        Map<Operation, Histogram> recorded = new EnumMap<>(Operation.class);
+        int totalWeight = profile.getPostWeight() + profile.getBatchWeight() + profile.getGetWeight();
+
+        for(long scheduled = first; scheduled < end; scheduled += intervalNanos){
+            for(long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()){
+                LockSupport.parkNanos(wait);
+            }
+
+            int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+            Operation operation = pick < profile.getPostWeight() ? Operation.POST
+                    : pick < profile.getPostWeight() + profile.getBatchWeight() ? Operation.BATCH : Operation.GET;
+
+            try {
+                execute(operation);
+            } catch(Exception e) {
+                failures.add(operation.getLabel() + ": " + e);
+            }
+
+            recorded.computeIfAbsent(operation, o -> new Histogram(HIGHEST_LATENCY_MICROS, 3))
+                    .recordValue(Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(Math.max(0, System.nanoTime() - scheduled))));
+        }
+
+        return recorded;
+    }
+
+    private void execute(Operation operation) throws IOException {
+        switch(operation){
+            case POST:
+                postTransactions(operation, 1, "/transactions");
+                break;
+            case BATCH:
+                postTransactions(operation, profile.getBatchSize(), "/transactions/batch");
+                break;
+            default:
+                ResponseEntity<String> response = exchange(HttpMethod.GET, "/statistics", null);
+                expect(operation, response, HttpStatus.OK);
+                objectMapper.readTree(response.getBody());
+        }
+    }
+
+    private void postTransactions(Operation operation, int size, String path) throws IOException {
+        long[] timestamps = new long[size];
+        long[] amountsInCents = new long[size];
+        StringBuilder body = new StringBuilder();
+        long now = System.currentTimeMillis();
+
+        for(int i = 0; i < size; i++){
+            timestamps[i] = timestampNear(now);
+            amountsInCents[i] = ThreadLocalRandom.current().nextLong(1, MAX_AMOUNT_IN_CENTS);
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"amount\":\"").append(BigDecimal.valueOf(amountsInCents[i], Statistic.SCALE).toPlainString())
+                    .append("\",\"timestamp\":\"").append(TIMESTAMP.format(Instant.ofEpochMilli(timestamps[i]))).append("\"}");
+        }
+
+        long sentAt = System.currentTimeMillis();
+        long tooOld;
+        long future;
+
+        if(operation == Operation.POST){
+            ResponseEntity<String> response = exchange(HttpMethod.POST, path, body.toString());
+            HttpStatus status = response.getStatusCode();
+            if(status != HttpStatus.CREATED && status != HttpStatus.NO_CONTENT && status != HttpStatus.UNPROCESSABLE_ENTITY){
+                failures.add(operation.getLabel() + ": unexpected status " + status);
+                return;
+            }
+            tooOld = status == HttpStatus.NO_CONTENT ? 1 : 0;
+            future = status == HttpStatus.UNPROCESSABLE_ENTITY ? 1 : 0;
+        } else {
+            ResponseEntity<String> response = exchange(HttpMethod.POST, path, "[" + body + "]");
+            if(!expect(operation, response, HttpStatus.OK)){
+                return;
+            }
+            JsonNode result = objectMapper.readTree(response.getBody());
+            tooOld = result.get("tooOld").asLong();
+            future = result.get("future").asLong();
+        }
+
+        String inconsistency = model.record(timestamps, amountsInCents, tooOld, future, sentAt, System.currentTimeMillis());
+        if(inconsistency != null){
+            failures.add(operation.getLabel() + ": " + inconsistency);
+        }
+    }
+
+    /**
+     * Within the window, within {@code load.edge-skew-ms} of either of its edges, or clearly outside of
+     * it, so that every outcome is exercised.
+     */
+    private long timestampNear(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int skew = Math.max(1, profile.getEdgeSkewMillis());
+        int pick = random.nextInt(10);
+
+        if(pick < 5){
+            return now - random.nextLong(ReferenceModel.WINDOW_MILLIS);
+        } else if(pick < 7){
+            return now - ReferenceModel.WINDOW_MILLIS + random.nextInt(-skew, skew);
+        } else if(pick < 8){
+            return now + random.nextInt(-skew, skew);
+        } else if(pick < 9){
+            return now - ReferenceModel.WINDOW_MILLIS - skew - random.nextLong(ReferenceModel.WINDOW_MILLIS);
+        }
+        return now + skew + random.nextLong(ReferenceModel.WINDOW_MILLIS);
+    }
+
+    /**
+     * Compares the statistic with the model at every second the service may have published it at.
+     */
+    private void checkStatistic() throws IOException {
+        long before = System.currentTimeMillis();
+        ResponseEntity<String> response = timed(Operation.GET, () -> exchange(HttpMethod.GET, "/statistics", null));
+        long after = System.currentTimeMillis();
+
+        if(!expect(Operation.GET, response, HttpStatus.OK)){
+            return;
+        }
+
+        JsonNode actual = objectMapper.readTree(response.getBody());
+        List<Statistic> expected = new ArrayList<>();
+        for(long second = Math.floorDiv(before, 1000L) - 1; second <= Math.floorDiv(after, 1000L); second++){
+            Statistic statistic = model.statisticAt(second);
+            if(matches(actual, statistic)){
+                return;
+            }
+            expected.add(statistic);
+        }
+
+        failures.add(Operation.GET.getLabel() + ": statistic " + actual + " is none of " + expected);
+    }
+
+    private static boolean matches(JsonNode actual, Statistic expected) {
+        return actual.get("count").asLong() == expected.getCount()
+                && new BigDecimal(actual.get("sum").asText()).compareTo(expected.getSum()) == 0
+                && new BigDecimal(actual.get("avg").asText()).compareTo(expected.getAvg()) == 0
+                && new BigDecimal(actual.get("max").asText()).compareTo(expected.getMax()) == 0
+                && new BigDecimal(actual.get("min").asText()).compareTo(expected.getMin()) == 0;
+    }
+
+    private void deleteTransactions() {
+        ResponseEntity<String> response = timed(Operation.DELETE, () -> exchange(HttpMethod.DELETE, "/transactions", null));
+        expect(Operation.DELETE, response, HttpStatus.NO_CONTENT);
+        model.clear();
+    }
+
+    private ResponseEntity<String> timed(Operation operation, Supplier<ResponseEntity<String>> request) {
+        long start = System.nanoTime();
+        ResponseEntity<String> response = request.get();
+        histograms.get(operation).recordValue(Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+        return response;
+    }
+
+    private ResponseEntity<String> exchange(HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(baseUrl + path, method, new HttpEntity<>(body, headers), String.class);
+    }
+
+    private boolean expect(Operation operation, ResponseEntity<String> response, HttpStatus status) {
+        if(response.getStatusCode() != status){
+            failures.add(operation.getLabel() + ": unexpected status " + response.getStatusCode());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Leaves every status to the caller, 422 included.
+     */
+    private static final class AcceptingErrorHandler implements ResponseErrorHandler {
+
+        @Override
+        public boolean hasError(ClientHttpResponse response) {
+            return false;
+        }
+
+        @Override
+        public void handleError(ClientHttpResponse response) {
+        }
+
+    }
+
+}
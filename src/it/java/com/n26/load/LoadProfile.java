@@ -0,0 +1,60 @@
+package com.n26.load;
+
+import lombok.Getter;
+
+import java.util.Properties;
+
+/**
+ * Load of a {@link LoadRegressionIT} run. Every {@code load.*} key defaults to the value stored with the
+ * baselines and can be overridden as a system property, e.g. {@code mvn verify -Dload.rate=2000}.
+ * Requests are split between single posts, batches and statistics by the weights, while
+ * {@code DELETE /transactions} ends every round.
+ */
+@Getter
+final class LoadProfile {
+
+    static final String[] KEYS = {"load.warmup-seconds", "load.seconds", "load.rate", "load.workers", "load.round-ms", "load.batch-size",
+            "load.post-weight", "load.batch-weight", "load.get-weight", "load.edge-skew-ms", "load.profiles"};
+
+    private final int warmupSeconds;
+    private final int seconds;
+    private final int rate;
+    private final int workers;
+    private final int roundMillis;
+    private final int batchSize;
+    private final int postWeight;
+    private final int batchWeight;
+    private final int getWeight;
+    private final int edgeSkewMillis;
+    private final String profiles;
+
+    /**
+     * Whether no key was overridden, in which case the stored baseline applies.
+     */
+    private final boolean baseline;
+
+    LoadProfile(Properties defaults) {
+        Properties values = new Properties();
+        boolean overridden = false;
+
+        for(String key : KEYS){
+            String value = System.getProperty(key, defaults.getProperty(key, ""));
+            overridden |= !value.equals(defaults.getProperty(key, ""));
+            values.setProperty(key, value.trim());
+        }
+
+        this.warmupSeconds = Integer.parseInt(values.getProperty("load.warmup-seconds"));
+        this.seconds = Integer.parseInt(values.getProperty("load.seconds"));
+        this.rate = Integer.parseInt(values.getProperty("load.rate"));
+        this.workers = Integer.parseInt(values.getProperty("load.workers"));
+        this.roundMillis = Integer.parseInt(values.getProperty("load.round-ms"));
+        this.batchSize = Integer.parseInt(values.getProperty("load.batch-size"));
+        this.postWeight = Integer.parseInt(values.getProperty("load.post-weight"));
+        this.batchWeight = Integer.parseInt(values.getProperty("load.batch-weight"));
+        this.getWeight = Integer.parseInt(values.getProperty("load.get-weight"));
+        this.edgeSkewMillis = Integer.parseInt(values.getProperty("load.edge-skew-ms"));
+        this.profiles = values.getProperty("load.profiles");
+        this.baseline = !overridden;
+    }
+
+}
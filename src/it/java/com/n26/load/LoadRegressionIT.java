@@ -0,0 +1,114 @@
+package com.n26.load;
+
+import com.n26.Application;
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Boots the service on a random port and drives it with the {@link LoadGenerator}. Fails when a
+ * statistic differs from the reference model. With {@code -Dload.gate=true}, it also fails when the p99
+ * latency of a request regressed past {@code load-baseline.properties} by more than its tolerance; the
+ * gate is off by default, since latencies only compare on the machine which recorded the baseline. The
+ * baseline only applies to its own load, so it is not compared when a {@code load.*} property was
+ * overridden.
+ * <p>
+ * The load is open, so the throughput only follows {@code load.rate} and is reported, not compared.
+ * <p>
+ * The latency distribution of each request is written to {@code target/load/<request>.hgrm}, and the
+ * measured values to {@code target/load/load-baseline.properties}, which can replace the stored one.
+ */
+public class LoadRegressionIT {
+
+    private static final String BASELINE = "load-baseline.properties";
+    private static final String GATE = "load.gate";
+    private static final File REPORTS = new File("target/load");
+
+    private Properties baseline;
+    private LoadProfile profile;
+    private ConfigurableApplicationContext node;
+
+    @Before
+    public void startNode() throws IOException {
+        baseline = new Properties();
+        try(InputStream input = getClass().getClassLoader().getResourceAsStream(BASELINE)) {
+            baseline.load(input);
+        }
+        profile = new LoadProfile(baseline);
+
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        if(!profile.getProfiles().isEmpty()){
+            args.add("--spring.profiles.active=" + profile.getProfiles());
+        }
+        node = Application.run(args.toArray(new String[0]));
+    }
+
+    @After
+    public void stopNode() {
+        node.close();
+    }
+
+    @Test
+    public void run_whenDrivenWithTheBaselineLoad_shouldMatchTheModelWithoutRegressing() throws Exception {
+        LoadGenerator generator = new LoadGenerator("http://localhost:" + node.getEnvironment().getProperty("local.server.port"), profile);
+
+        generator.run();
+        report(generator);
+
+        assertThat(generator.getFailures(), empty());
+        if(!Boolean.getBoolean(GATE) || !profile.isBaseline()){
+            return;
+        }
+
+        double tolerance = Double.parseDouble(baseline.getProperty("tolerance.p99"));
+        for(Map.Entry<Operation, Histogram> histogram : generator.getHistograms().entrySet()){
+            String key = histogram.getKey().getLabel() + ".p99-us";
+            assertThat(key, histogram.getValue().getValueAtPercentile(99),
+                    lessThanOrEqualTo((long) (Long.parseLong(baseline.getProperty(key)) * (1 + tolerance))));
+        }
+    }
+
+    private void report(LoadGenerator generator) throws IOException {
+        REPORTS.mkdirs();
+        Properties measured = new Properties();
+        for(String key : LoadProfile.KEYS){
+            measured.setProperty(key, System.getProperty(key, baseline.getProperty(key, "")));
+        }
+        measured.setProperty("tolerance.p99", baseline.getProperty("tolerance.p99"));
+
+        for(Map.Entry<Operation, Histogram> histogram : generator.getHistograms().entrySet()){
+            String label = histogram.getKey().getLabel();
+            measured.setProperty(label + ".p99-us", String.valueOf(histogram.getValue().getValueAtPercentile(99)));
+
+            try(PrintStream output = new PrintStream(new File(REPORTS, label + ".hgrm"), "UTF-8")) {
+                histogram.getValue().outputPercentileDistribution(output, 1000.0);
+            }
+            System.out.printf("%s: %d requests, p50 %d us, p99 %d us, max %d us%n", label, histogram.getValue().getTotalCount(),
+                    histogram.getValue().getValueAtPercentile(50), histogram.getValue().getValueAtPercentile(99),
+                    histogram.getValue().getMaxValue());
+        }
+        System.out.printf("throughput: %.0f requests/s%n", generator.getThroughput());
+
+        try(OutputStream output = new FileOutputStream(new File(REPORTS, BASELINE))) {
+            measured.store(output, "Measured by LoadRegressionIT");
+        }
+    }
+
+}
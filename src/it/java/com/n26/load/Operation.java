@@ -0,0 +1,23 @@
+package com.n26.load;
+
+/**
+ * Requests issued by the {@link LoadGenerator}, each with its own latency histogram.
+ */
+enum Operation {
+
+    POST("post"),
+    BATCH("batch"),
+    GET("get"),
+    DELETE("delete");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.n26.load;
+
+import com.n26.entities.Statistic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * What the service should answer, rebuilt naively from every transaction it accepted since the last
+ * {@code DELETE /transactions}.
+ * <p>
+ * Which transactions were accepted is derived from the outcome counts of each request: the service
+ * validates the transactions of a request against its clock as it reads them, within a tick of its coarse
+ * clock for a request of this size, so its too old transactions are the oldest ones and its future
+ * transactions the newest ones, unless two of them fall within that tick of an edge of the window.
+ * Each outcome is also checked against the client clock readings taken around the request.
+ */
+final class ReferenceModel {
+
+    static final long WINDOW_MILLIS = 60_000L;
+
+    /**
+     * How far the clock of the service may be from the client clock readings, its coarse clock included.
+     */
+    static final long CLOCK_TOLERANCE_MILLIS = 250L;
+
+    private final List<long[]> accepted = new ArrayList<>();
+
+    /**
+     * Records the transactions the service accepted out of those sent.
+     *
+     * @return why the outcomes are inconsistent with the clock readings, or {@code null} if they are not
+     */
+    String record(long[] timestamps, long[] amountsInCents, long tooOld, long future, long sentAt, long receivedAt) {
+        Integer[] order = new Integer[timestamps.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+
+        if(tooOld + future > timestamps.length){
+            return "more outcomes than the " + timestamps.length + " transactions sent";
+        }
+
+        List<long[]> acceptedNow = new ArrayList<>();
+        for(int rank = 0; rank < order.length; rank++){
+            long timestamp = timestamps[order[rank]];
+
+            if(rank < tooOld){
+                if(timestamp >= receivedAt - WINDOW_MILLIS + CLOCK_TOLERANCE_MILLIS){
+                    return "transaction " + (receivedAt - timestamp) + " ms old deemed too old";
+                }
+            } else if(rank >= timestamps.length - future){
+                if(timestamp <= sentAt - CLOCK_TOLERANCE_MILLIS){
+                    return "transaction " + (sentAt - timestamp) + " ms old deemed in the future";
+                }
+            } else {
+                if(timestamp < sentAt - WINDOW_MILLIS - CLOCK_TOLERANCE_MILLIS){
+                    return "transaction " + (sentAt - timestamp) + " ms old accepted";
+                }
+                if(timestamp > receivedAt + CLOCK_TOLERANCE_MILLIS){
+                    return "transaction " + (timestamp - receivedAt) + " ms in the future accepted";
+                }
+                acceptedNow.add(new long[]{timestamp, amountsInCents[order[rank]]});
+            }
+        }
+
+        synchronized(this) {
+            accepted.addAll(acceptedNow);
+        }
+        return null;
+    }
+
+    synchronized void clear() {
+        accepted.clear();
+    }
+
+    /**
+     * The statistic of the default window as published at the given second.
+     */
+    synchronized Statistic statisticAt(long epochSecond) {
+        long sum = 0;
+        long count = 0;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+
+        for(long[] transaction : accepted){
+            long second = Math.floorDiv(transaction[0], 1000L);
+            if(second > epochSecond - WINDOW_MILLIS / 1000 && second <= epochSecond){
+                sum += transaction[1];
+                count++;
+                max = Math.max(max, transaction[1]);
+                min = Math.min(min, transaction[1]);
+            }
+        }
+
+        return new Statistic.StatisticBuilder()
+                .sum(sum)
+                .avg(sum, count)
+                .max(count > 0 ? max : 0)
+                .min(count > 0 ? min : 0)
+                .count(count)
+                .build();
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.n26.services;
+
+import com.n26.Application;
+import com.n26.entities.Transaction;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Runs two nodes on random ports, plus a peer which accepts connections but never answers. Each node is
+ * asked once before the tests, since the first request to a node also pays for initializing its
+ * dispatcher and the client, which alone can exceed the budget of a peer.
+ */
+public class ClusterStatisticsServiceIT {
+
+    private static final Duration WARM_UP_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration PEER_TIMEOUT = Duration.ofMillis(500);
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final List<Socket> stalled = new CopyOnWriteArrayList<>();
+    private ServerSocket stalledPeer;
+    private TransactionService aggregator;
+
+    @Before
+    public void startNodes() throws Exception {
+        for(int i = 0; i < 2; i++){
+            nodes.add(Application.run("--server.port=0"));
+        }
+
+        aggregator = new TransactionService();
+        aggregator.init();
+        new ClusterStatisticsService(aggregator, Arrays.asList(urlOf(nodes.get(0)), urlOf(nodes.get(1))), WARM_UP_TIMEOUT)
+                .getStatisticSnapshot(StatisticWindow.DEFAULT)
+                .block();
+
+        stalledPeer = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while(true){
+                    stalled.add(stalledPeer.accept());
+                }
+            } catch(Exception e) {
+                // closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopNodes() throws Exception {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        stalledPeer.close();
+        for(Socket socket : stalled){
+            socket.close();
+        }
+    }
+
+    @Test
+    public void getStatisticSnapshot_whenPeersHoldTransactions_shouldMergeThem(){
+        serviceOf(nodes.get(0)).addTransaction(new Transaction(new BigDecimal("10.00"), LocalDateTime.now(Clock.systemUTC())));
+        serviceOf(nodes.get(0)).addTransaction(new Transaction(new BigDecimal("30.00"), LocalDateTime.now(Clock.systemUTC())));
+        serviceOf(nodes.get(1)).addTransaction(new Transaction(new BigDecimal("5.00"), LocalDateTime.now(Clock.systemUTC())));
+        aggregator.addTransaction(new Transaction(new BigDecimal("15.00"), LocalDateTime.now(Clock.systemUTC())));
+
+        ClusterStatisticsService clusterStatisticsService = new ClusterStatisticsService(aggregator,
+                Arrays.asList(urlOf(nodes.get(0)), urlOf(nodes.get(1))), WARM_UP_TIMEOUT);
+
+        StatisticSnapshot snapshot = clusterStatisticsService.getStatisticSnapshot(StatisticWindow.DEFAULT).block();
+
+        assertThat(snapshot.getStatistic(), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("60.00"))),
+                hasProperty("count", equalTo(4L)),
+                hasProperty("max", equalTo(new BigDecimal("30.00"))),
+                hasProperty("min", equalTo(new BigDecimal("5.00")))
+        ));
+    }
+
+    @Test
+    public void getStatisticSnapshot_whenPeerStalls_shouldAnswerWithoutItWithinTheBudget(){
+        aggregator.addTransaction(new Transaction(new BigDecimal("15.00"), LocalDateTime.now(Clock.systemUTC())));
+
+        ClusterStatisticsService clusterStatisticsService = new ClusterStatisticsService(aggregator,
+                Collections.singletonList("http://localhost:" + stalledPeer.getLocalPort()), PEER_TIMEOUT);
+
+        long start = System.nanoTime();
+        StatisticSnapshot snapshot = clusterStatisticsService.getStatisticSnapshot(StatisticWindow.DEFAULT).block();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start), lessThan(PEER_TIMEOUT.multipliedBy(4)));
+        assertThat(snapshot.getStatistic(), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("15.00"))),
+                hasProperty("count", equalTo(1L))
+        ));
+    }
+
+    @Test
+    public void getStatisticSnapshot_whenPeerPartialIsTruncated_shouldMergeTheOthers() throws Exception {
+        serviceOf(nodes.get(0)).addTransaction(new Transaction(new BigDecimal("10.00"), LocalDateTime.now(Clock.systemUTC())));
+        aggregator.addTransaction(new Transaction(new BigDecimal("15.00"), LocalDateTime.now(Clock.systemUTC())));
+        byte[] partial = serviceOf(nodes.get(1)).exportPartial();
+        byte[] truncated = Arrays.copyOf(partial, partial.length - 1);
+
+        HttpServer malformedPeer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        malformedPeer.createContext(ClusterStatisticsService.PARTIAL_PATH, exchange -> {
+            exchange.sendResponseHeaders(200, truncated.length);
+            exchange.getResponseBody().write(truncated);
+            exchange.close();
+        });
+        malformedPeer.start();
+
+        try {
+            ClusterStatisticsService clusterStatisticsService = new ClusterStatisticsService(aggregator,
+                    Arrays.asList(urlOf(nodes.get(0)), "http://localhost:" + malformedPeer.getAddress().getPort()), WARM_UP_TIMEOUT);
+
+            StatisticSnapshot snapshot = clusterStatisticsService.getStatisticSnapshot(StatisticWindow.DEFAULT).block();
+
+            assertThat(snapshot.getStatistic(), allOf(
+                    hasProperty("sum", equalTo(new BigDecimal("25.00"))),
+                    hasProperty("count", equalTo(2L))
+            ));
+        } finally {
+            malformedPeer.stop(0);
+        }
+    }
+
+    private static TransactionService serviceOf(ConfigurableApplicationContext node) {
+        return node.getBean(TransactionService.class);
+    }
+
+    private static String urlOf(ConfigurableApplicationContext node) {
+        return "http://localhost:" + node.getEnvironment().getProperty("local.server.port");
+    }
+
+}
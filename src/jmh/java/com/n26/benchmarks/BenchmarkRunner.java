@@ -0,0 +1,39 @@
+package com.n26.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks once per thread count of {@code jmh.threads}, with the GC profiler attached so
+ * every result carries its allocation rate next to throughput and sampled latency percentiles. Results
+ * are also written as JSON to {@code target/jmh-<threads>-threads.json}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String... args) throws RunnerException {
+        for(String threads : System.getProperty("jmh.threads", "1").split(",")){
+            Options options = new OptionsBuilder()
+                    .include(System.getProperty("jmh.include", "com.n26.benchmarks.*"))
+                    .threads(Integer.parseInt(threads.trim()))
+                    .forks(Integer.getInteger("jmh.forks", 1))
+                    .warmupIterations(Integer.getInteger("jmh.warmupIterations", 3))
+                    .measurementIterations(Integer.getInteger("jmh.measurementIterations", 5))
+                    .warmupTime(TimeValue.seconds(Integer.getInteger("jmh.iterationSeconds", 5)))
+                    .measurementTime(TimeValue.seconds(Integer.getInteger("jmh.iterationSeconds", 5)))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-" + threads.trim() + "-threads.json")
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.n26.benchmarks;
+
+import com.n26.entities.Statistic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the merged cents of a window into a {@link Statistic}, for windows whose population
+ * drives the magnitude of the sum and the length of the average's division.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticBuilderBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public long windowPopulation;
+
+    private long sum;
+    private long max;
+    private long min;
+
+    @Setup
+    public void aggregate() {
+        sum = windowPopulation * 50123L;
+        max = 99999L;
+        min = 1L;
+    }
+
+    @Benchmark
+    public Statistic build() {
+        return new Statistic.StatisticBuilder()
+                .sum(sum)
+                .avg(sum, windowPopulation)
+                .max(max)
+                .min(min)
+                .count(windowPopulation)
+                .build();
+    }
+
+}
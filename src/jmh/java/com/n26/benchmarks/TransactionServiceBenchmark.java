@@ -0,0 +1,107 @@
+package com.n26.benchmarks;
+
+import com.n26.entities.Statistic;
+import com.n26.entities.Transaction;
+import com.n26.services.TransactionBatch;
+import com.n26.services.TransactionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion and statistics of {@link TransactionService} over a window pre-populated with
+ * {@code windowPopulation} transactions. The window is rebuilt before every iteration with timestamps
+ * no older than 45 seconds, so nothing expires while an iteration is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionServiceBenchmark {
+
+    private static final int POOL_SIZE = 1024;
+    private static final long SPREAD_MILLIS = 45000L;
+
+    @Param({"1000", "100000", "10000000"})
+    public int windowPopulation;
+
+    private TransactionService transactionService;
+
+    @Setup(Level.Trial)
+    public void createService() {
+        transactionService = new TransactionService();
+        transactionService.init();
+    }
+
+    @Setup(Level.Iteration)
+    public void populateWindow() {
+        transactionService.deleteTransactions();
+
+        long now = System.currentTimeMillis();
+        TransactionBatch batch = transactionService.newBatch();
+        for(int i = 0; i < windowPopulation; i++){
+            batch.add(now - i % SPREAD_MILLIS, i % 100000);
+        }
+        batch.complete();
+    }
+
+    @State(Scope.Thread)
+    public static class Transactions {
+
+        private final Transaction[] pool = new Transaction[POOL_SIZE];
+        private final long[] timestamps = new long[POOL_SIZE];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void refresh() {
+            LocalDateTime now = LocalDateTime.now(Clock.systemUTC());
+            long nowMillis = System.currentTimeMillis();
+
+            for(int i = 0; i < POOL_SIZE; i++){
+                pool[i] = new Transaction(BigDecimal.valueOf(i * 37L % 100000, 2), now.minusNanos(i * 1000000L));
+                timestamps[i] = nowMillis - i;
+            }
+        }
+
+        int next() {
+            return next++ & (POOL_SIZE - 1);
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private TransactionBatch batch;
+
+        @Setup(Level.Iteration)
+        public void open(TransactionServiceBenchmark benchmark) {
+            batch = benchmark.transactionService.newBatch();
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            batch.complete();
+        }
+
+    }
+
+    @Benchmark
+    public Object addTransaction(Transactions transactions) {
+        return transactionService.addTransaction(transactions.pool[transactions.next()]);
+    }
+
+    @Benchmark
+    public Object addToBatch(Transactions transactions, Batch batch) {
+        int i = transactions.next();
+        return batch.batch.add(transactions.timestamps[i], i * 37L % 100000);
+    }
+
+    @Benchmark
+    public Statistic runStatistics() {
+        return transactionService.runStatistics();
+    }
+
+}
@@ -1,13 +1,43 @@
 package com.n26;
 
-import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
+    static final String REACTIVE_PROFILE = "reactive";
+
     public static void main(String... args) {
-        SpringApplication.run(Application.class, args);
+        run(args);
+    }
+
+    /**
+     * Starts the application on the runtime of its active profiles. Spring Boot 2.0 creates the
+     * environment before {@code spring.main.web-application-type} is read from the profile, so without
+     * choosing the type up front the {@code reactive} profile would run in a servlet environment, on
+     * which the actuator also registers its servlet health extension and fails on startup.
+     */
+    public static ConfigurableApplicationContext run(String... args) {
+        return new SpringApplicationBuilder(Application.class)
+                .web(webApplicationTypeOf(args))
+                .run(args);
+    }
+
+    static WebApplicationType webApplicationTypeOf(String... args) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+
+        return Arrays.asList(environment.getActiveProfiles()).contains(REACTIVE_PROFILE)
+                ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET;
     }
 
 }
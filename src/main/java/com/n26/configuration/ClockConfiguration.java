@@ -0,0 +1,18 @@
+package com.n26.configuration;
+
+import com.n26.time.CoarseClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+public class ClockConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public Clock clock(@Value("${clock.tick-interval-ms:1}") long tickIntervalMillis) {
+        return new CoarseClock(Clock.systemUTC(), tickIntervalMillis);
+    }
+
+}
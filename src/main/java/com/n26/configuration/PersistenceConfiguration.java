@@ -0,0 +1,34 @@
+package com.n26.configuration;
+
+import com.n26.persistence.MappedTransactionLog;
+import com.n26.persistence.SnapshotStore;
+import com.n26.persistence.TransactionLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+
+@Configuration
+public class PersistenceConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "persistence.wal.enabled", havingValue = "true")
+    public TransactionLog transactionLog(@Value("${persistence.wal.directory:wal}") String directory,
+                                         @Value("${persistence.wal.segment-size:8388608}") int segmentSize,
+                                         @Value("${persistence.wal.segment-interval-ms:10000}") long segmentIntervalMillis,
+                                         @Value("${persistence.wal.flush-interval-ms:10}") long flushIntervalMillis,
+                                         @Value("${persistence.wal.synchronous:false}") boolean synchronous,
+                                         Clock clock) {
+        return new MappedTransactionLog(Paths.get(directory), segmentSize, segmentIntervalMillis, flushIntervalMillis, synchronous, clock);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "persistence.snapshot.enabled", havingValue = "true")
+    public SnapshotStore snapshotStore(@Value("${persistence.snapshot.file:statistics.snapshot}") String file) {
+        return new SnapshotStore(Paths.get(file));
+    }
+
+}
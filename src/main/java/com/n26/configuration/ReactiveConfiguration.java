@@ -0,0 +1,47 @@
+package com.n26.configuration;
+
+import com.n26.controllers.TransactionController;
+import com.n26.controllers.TransactionHandler;
+import com.n26.services.ClusterStatisticsService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.*;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Routes of the reactive runtime, enabled by the {@code reactive} profile. Tomcat stays on the classpath
+ * for the servlet runtime, so Netty is declared explicitly to take precedence over it.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfiguration {
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(TransactionController.APPLICATION_NDJSON_VALUE);
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> transactionRoutes(TransactionHandler handler) {
+        return route(POST("/transactions").and(contentType(MediaType.APPLICATION_JSON)), handler::addTransaction)
+                .andRoute(POST("/transactions/batch").and(contentType(MediaType.APPLICATION_JSON)), handler::addTransactions)
+                .andRoute(POST("/transactions/batch").and(contentType(APPLICATION_NDJSON)), handler::streamTransactions)
+                .andRoute(DELETE("/transactions"), handler::deleteTransactions)
+                .andRoute(GET("/statistics"), handler::getStatistics)
+                .andRoute(GET(ClusterStatisticsService.PARTIAL_PATH), handler::getPartialStatistics)
+                .andRoute(GET("/statistics/stream"), handler::streamStatistics)
+                .andRoute(GET("/statistics/top"), handler::getTopStatistics)
+                .andRoute(GET("/statistics/keys/{key}"), handler::getKeyStatistics)
+                .filter((request, next) -> Mono.defer(() -> next.handle(request)).onErrorResume(handler::handleError));
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.n26.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Spring otherwise runs every scheduled task on a single thread, on which writing and syncing a snapshot
+ * would hold back the refresh of the statistics. The pool has a thread per scheduled task by default.
+ */
+@Configuration
+public class SchedulingConfiguration {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduling.threads:3}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("scheduling-");
+        return scheduler;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.n26.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Statistic streams are written from their own pool, as Spring MVC otherwise starts a thread per element.
+ * Each subscriber only ever has one element pending, but writing it blocks until the client reads, so a
+ * stalled client holds its thread until Tomcat gives up on the write. The {@link StreamWriterPool} keeps
+ * {@code statistics.stream.threads} threads and grows up to {@code statistics.stream.max-threads}, so that
+ * other subscribers never wait behind stalled ones.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ServletConfiguration implements WebMvcConfigurer {
+
+    @Value("${statistics.stream.threads:4}")
+    private int streamThreads;
+
+    @Value("${statistics.stream.max-threads:64}")
+    private int streamMaxThreads;
+
+    @Bean
+    public ThreadPoolTaskExecutor statisticStreamExecutor() {
+        return new StreamWriterPool(streamThreads, streamMaxThreads);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(statisticStreamExecutor());
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.n26.configuration;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writers of streamed responses, which grow up to their maximum instead of queuing, so that a write never
+ * waits behind one blocked on a stalled client. Once every writer is busy, a write submitted from outside
+ * the pool waits {@link #HAND_OFF_MILLIS} for one to finish, then is rejected, which ends its stream.
+ * A writer finishing a subscriber's element submits the next one itself, and that one is queued for the
+ * writer to take once it is done.
+ */
+final class StreamWriterPool extends ThreadPoolTaskExecutor {
+
+    private static final long HAND_OFF_MILLIS = 10L;
+
+    private final HandOffQueue queue = new HandOffQueue();
+
+    StreamWriterPool(int threads, int maxThreads) {
+        setCorePoolSize(threads);
+        setMaxPoolSize(Math.max(threads, maxThreads));
+        setThreadNamePrefix("statistic-stream-");
+        setDaemon(true);
+        setRejectedExecutionHandler(this::reject);
+    }
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        return queue;
+    }
+
+    private void reject(Runnable task, ThreadPoolExecutor executor) {
+        if(Thread.currentThread().getName().startsWith(getThreadNamePrefix())){
+            queue.add(task);
+            return;
+        }
+
+        try {
+            if(queue.tryTransfer(task, HAND_OFF_MILLIS, TimeUnit.MILLISECONDS)){
+                return;
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new RejectedExecutionException("Every stream writer is busy");
+    }
+
+    /**
+     * Only takes a task when a writer is idle, so the pool grows otherwise.
+     */
+    private static final class HandOffQueue extends LinkedTransferQueue<Runnable> {
+
+        @Override
+        public boolean offer(Runnable task) {
+            return tryTransfer(task);
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.n26.controllers;
+
+import org.reactivestreams.Subscription;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes the events of a statistic stream to its {@link SseEmitter} from the stream writers, requesting the
+ * next event only once the previous one is written, and ending the response after the last one. When every
+ * writer is blocked on a stalled client the write is rejected and the response completed, so the new
+ * client sees its stream end rather than waiting on a subscription which was already cancelled.
+ */
+final class StatisticStream extends BaseSubscriber<ServerSentEvent<String>> {
+
+    private static final long NO_TIMEOUT = -1L;
+
+    private final SseEmitter emitter = new SseEmitter(NO_TIMEOUT);
+    private final TaskExecutor writers;
+
+    private boolean writing;
+    private boolean completed;
+
+    StatisticStream(TaskExecutor writers) {
+        this.writers = writers;
+        emitter.onCompletion(this::dispose);
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        request(1);
+    }
+
+    @Override
+    protected void hookOnNext(ServerSentEvent<String> event) {
+        synchronized(this){
+            writing = true;
+        }
+
+        try {
+            writers.execute(() -> write(event));
+        } catch(RejectedExecutionException e) {
+            dispose();
+            emitter.complete();
+        }
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        synchronized(this){
+            completed = true;
+            if(writing){
+                return;
+            }
+        }
+        emitter.complete();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        emitter.completeWithError(throwable);
+    }
+
+    private void write(ServerSentEvent<String> event) {
+        try {
+            emitter.send(SseEmitter.event().id(event.id()).name(event.event()).data(event.data()));
+        } catch(IOException | IllegalStateException e) {
+            dispose();
+            return;
+        }
+
+        synchronized(this){
+            writing = false;
+            if(completed){
+                emitter.complete();
+                return;
+            }
+        }
+        request(1);
+    }
+
+}
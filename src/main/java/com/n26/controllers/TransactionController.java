@@ -1,34 +1,79 @@
 package com.n26.controllers;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.BatchResult;
+import com.n26.entities.KeyStatistic;
 import com.n26.entities.Statistic;
 import com.n26.entities.Transaction;
+import com.n26.entities.TransactionOutcome;
+import com.n26.parsers.TransactionStreamReader;
+import com.n26.services.ClusterStatisticsService;
+import com.n26.services.KeyRanking;
+import com.n26.services.StatisticBroadcaster;
+import com.n26.services.StatisticSnapshot;
+import com.n26.services.StatisticWindow;
 import com.n26.services.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class TransactionController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private TransactionStreamReader transactionStreamReader;
+
+    @Autowired(required = false)
+    private ClusterStatisticsService clusterStatisticsService;
+
+    @Autowired
+    private StatisticBroadcaster statisticBroadcaster;
+
+    @Autowired
+    private TaskExecutor statisticStreamExecutor;
+
     @PostMapping(value = "/transactions", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> addTransaction(@Valid @RequestBody Transaction transaction, Errors errors){
         if(errors.hasErrors()){
             return new ResponseEntity<>("Validation Error", HttpStatus.BAD_REQUEST);
         }
 
-        transactionService.addTransaction(transaction);
+        return new ResponseEntity<>(statusOf(transactionService.addTransaction(transaction)));
+    }
+
+    @PostMapping(value = "/transactions/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResult> addTransactions(@RequestBody List<Transaction> transactions){
+        BatchResult result = transactionService.addTransactions(transactions);
+        return ResponseEntity.ok(result);
+    }
 
-        return new ResponseEntity<>(HttpStatus.CREATED);
+    @PostMapping(value = "/transactions/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchResult> streamTransactions(InputStream body) throws IOException {
+        BatchResult result = transactionStreamReader.read(body, transactionService.newBatch());
+        return ResponseEntity.ok(result);
     }
 
     @DeleteMapping("/transactions")
@@ -38,9 +83,70 @@ public class TransactionController {
     }
 
     @GetMapping("/statistics")
-    public ResponseEntity<Statistic> getStatistics(){
-        Statistic statistic = transactionService.runStatistics();
-        return ResponseEntity.ok(statistic);
+    public ResponseEntity<byte[]> getStatistics(@RequestParam(required = false) String window, WebRequest request){
+        StatisticSnapshot snapshot;
+        if(clusterStatisticsService != null){
+            snapshot = clusterStatisticsService.getStatisticSnapshot(window == null ? StatisticWindow.DEFAULT : StatisticWindow.parse(window)).block();
+        } else {
+            snapshot = window == null
+                    ? transactionService.getStatisticSnapshot()
+                    : transactionService.getStatisticSnapshot(StatisticWindow.parse(window));
+        }
+
+        if(request.checkNotModified(snapshot.getEtag())){
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(snapshot.getEtag())
+                .body(snapshot.getJson());
+    }
+
+    /**
+     * Pushes the statistic of the window every tick, or only when it changes, instead of having clients
+     * poll {@code GET /statistics}.
+     */
+    @GetMapping(value = "/statistics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatistics(@RequestParam(required = false) String window,
+                                       @RequestParam(defaultValue = "false") boolean onlyChanges){
+        Flux<ServerSentEvent<String>> events = statisticBroadcaster.subscribe(window == null ? StatisticWindow.DEFAULT : StatisticWindow.parse(window), onlyChanges);
+
+        StatisticStream stream = new StatisticStream(statisticStreamExecutor);
+        events.subscribe(stream);
+        return stream.getEmitter();
+    }
+
+    @GetMapping("/statistics/top")
+    public ResponseEntity<List<KeyStatistic>> getTopStatistics(@RequestParam(defaultValue = "sum") String by,
+                                                               @RequestParam(defaultValue = "10") int k){
+        return ResponseEntity.ok(transactionService.topStatistics(KeyRanking.parse(by), k));
+    }
+
+    @GetMapping("/statistics/keys/{key}")
+    public ResponseEntity<Statistic> getKeyStatistics(@PathVariable String key){
+        return ResponseEntity.ok(transactionService.runStatistics(key));
+    }
+
+    /**
+     * The buckets of this node alone, for the aggregator to merge with those of its peers.
+     */
+    @GetMapping(ClusterStatisticsService.PARTIAL_PATH)
+    public ResponseEntity<byte[]> getPartialStatistics(){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(transactionService.exportPartial());
+    }
+
+    static HttpStatus statusOf(TransactionOutcome outcome){
+        switch(outcome){
+            case TOO_OLD:
+                return HttpStatus.NO_CONTENT;
+            case FUTURE:
+                return HttpStatus.UNPROCESSABLE_ENTITY;
+            default:
+                return HttpStatus.CREATED;
+        }
     }
 
     @ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY, reason = "transaction could not be parsed.")
@@ -49,4 +155,10 @@ public class TransactionController {
 
     }
 
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "transaction could not be read.")
+    @ExceptionHandler({JsonParseException.class, MismatchedInputException.class})
+    public void handleMalformedTransactionException() {
+
+    }
+
 }
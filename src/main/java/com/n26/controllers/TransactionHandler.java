@@ -0,0 +1,217 @@
+package com.n26.controllers;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.Transaction;
+import com.n26.parsers.TransactionFeed;
+import com.n26.parsers.TransactionStreamReader;
+import com.n26.services.ClusterStatisticsService;
+import com.n26.services.KeyRanking;
+import com.n26.services.StatisticBroadcaster;
+import com.n26.services.StatisticSnapshot;
+import com.n26.services.StatisticWindow;
+import com.n26.services.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+
+/**
+ * Non-blocking counterpart of {@link TransactionController} for the reactive runtime, answering with the
+ * same status codes on top of the same {@link TransactionService}. The aggregation never blocks, so
+ * handlers run on the event loop, except ingestion when a synchronous transaction log makes it wait for
+ * a flush, and deletion, which removes files: they then run on the elastic scheduler, so that the other
+ * connections of the loop are not held up.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class TransactionHandler {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionStreamReader transactionStreamReader;
+
+    @Autowired(required = false)
+    private ClusterStatisticsService clusterStatisticsService;
+
+    @Autowired
+    private StatisticBroadcaster statisticBroadcaster;
+
+    public Mono<ServerResponse> addTransaction(ServerRequest request){
+        return request.bodyToMono(Transaction.class)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("Required request body is missing")))
+                .publishOn(ingestionScheduler())
+                .map(transactionService::addTransaction)
+                .flatMap(outcome -> ServerResponse.status(TransactionController.statusOf(outcome)).build());
+    }
+
+    public Mono<ServerResponse> addTransactions(ServerRequest request){
+        return request.bodyToFlux(Transaction.class)
+                .collectList()
+                .publishOn(ingestionScheduler())
+                .map(transactionService::addTransactions)
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(result));
+    }
+
+    /**
+     * Every chunk of the body is read as it arrives by a {@link TransactionFeed} and released, so the body
+     * is never held whole.
+     */
+    public Mono<ServerResponse> streamTransactions(ServerRequest request){
+        return Mono.fromCallable(() -> transactionStreamReader.feed(transactionService.newBatch()))
+                .flatMap(feed -> request.body(BodyExtractors.toDataBuffers())
+                        .publishOn(ingestionScheduler())
+                        .doOnNext(chunk -> readTransactions(feed, chunk))
+                        .doOnCancel(feed::cancel)
+                        .then(Mono.fromCallable(feed::complete)))
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(result));
+    }
+
+    /**
+     * Truncating the transaction log and deleting the snapshot are blocking file operations, so they run
+     * on the elastic scheduler.
+     */
+    public Mono<ServerResponse> deleteTransactions(ServerRequest request){
+        return Mono.fromRunnable(transactionService::deleteTransactions)
+                .subscribeOn(Schedulers.elastic())
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> getStatistics(ServerRequest request){
+        if(clusterStatisticsService != null){
+            StatisticWindow window = request.queryParam("window").map(StatisticWindow::parse).orElse(StatisticWindow.DEFAULT);
+            return clusterStatisticsService.getStatisticSnapshot(window).flatMap(snapshot -> statisticResponse(request, snapshot));
+        }
+
+        StatisticSnapshot snapshot = request.queryParam("window")
+                .map(StatisticWindow::parse)
+                .map(transactionService::getStatisticSnapshot)
+                .orElseGet(transactionService::getStatisticSnapshot);
+
+        return statisticResponse(request, snapshot);
+    }
+
+    public Mono<ServerResponse> streamStatistics(ServerRequest request){
+        StatisticWindow window = request.queryParam("window").map(StatisticWindow::parse).orElse(StatisticWindow.DEFAULT);
+        boolean onlyChanges = request.queryParam("onlyChanges").map(Boolean::parseBoolean).orElse(false);
+
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(statisticBroadcaster.subscribe(window, onlyChanges)));
+    }
+
+    public Mono<ServerResponse> getTopStatistics(ServerRequest request){
+        KeyRanking ranking = KeyRanking.parse(request.queryParam("by").orElse("sum"));
+        int limit;
+        try {
+            limit = Integer.parseInt(request.queryParam("k").orElse("10"));
+        } catch(NumberFormatException e) {
+            throw new ServerWebInputException("Invalid k");
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(transactionService.topStatistics(ranking, limit));
+    }
+
+    public Mono<ServerResponse> getKeyStatistics(ServerRequest request){
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(transactionService.runStatistics(request.pathVariable("key")));
+    }
+
+    public Mono<ServerResponse> getPartialStatistics(ServerRequest request){
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .syncBody(transactionService.exportPartial());
+    }
+
+    private static Mono<ServerResponse> statisticResponse(ServerRequest request, StatisticSnapshot snapshot){
+        if(isNotModified(request, snapshot.getEtag())){
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(snapshot.getEtag())
+                .syncBody(snapshot.getJson());
+    }
+
+    /**
+     * Answers with the status {@link TransactionController} gives the same error: Jackson failures map to
+     * 422 or 400 as in its exception handlers, and the exceptions of the service carry their own status.
+     */
+    public Mono<ServerResponse> handleError(Throwable error){
+        HttpStatus status = statusOf(error);
+        return status == null ? Mono.error(error) : ServerResponse.status(status).build();
+    }
+
+    private Scheduler ingestionScheduler(){
+        return transactionService.isIngestionBlocking() ? Schedulers.elastic() : Schedulers.immediate();
+    }
+
+    private static void readTransactions(TransactionFeed feed, DataBuffer chunk){
+        try {
+            feed.feed(chunk.asByteBuffer());
+        } catch(IOException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            DataBufferUtils.release(chunk);
+        }
+    }
+
+    private static boolean isNotModified(ServerRequest request, String etag){
+        for(String header : request.headers().header(HttpHeaders.IF_NONE_MATCH)){
+            for(String candidate : header.split(",")){
+                String tag = candidate.trim();
+                if(tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)){
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static HttpStatus statusOf(Throwable error){
+        for(Throwable cause = error; cause != null; cause = cause.getCause()){
+            if(cause instanceof UnrecognizedPropertyException || cause instanceof InvalidFormatException){
+                return HttpStatus.UNPROCESSABLE_ENTITY;
+            }
+
+            if(cause instanceof JsonParseException || cause instanceof MismatchedInputException){
+                return HttpStatus.BAD_REQUEST;
+            }
+
+            ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(cause.getClass(), ResponseStatus.class);
+            if(responseStatus != null){
+                return responseStatus.code();
+            }
+        }
+
+        return error instanceof ResponseStatusException ? ((ResponseStatusException) error).getStatus() : null;
+    }
+
+}
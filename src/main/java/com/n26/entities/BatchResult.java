@@ -0,0 +1,28 @@
+package com.n26.entities;
+
+import lombok.Data;
+
+@Data
+public class BatchResult {
+
+    private long accepted;
+
+    private long tooOld;
+
+    private long future;
+
+    public void add(TransactionOutcome outcome) {
+        switch(outcome){
+            case ACCEPTED:
+                accepted++;
+                break;
+            case TOO_OLD:
+                tooOld++;
+                break;
+            case FUTURE:
+                future++;
+                break;
+        }
+    }
+
+}
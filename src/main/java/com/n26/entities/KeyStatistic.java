@@ -0,0 +1,18 @@
+package com.n26.entities;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonPropertyOrder({"key"})
+public class KeyStatistic {
+
+    private String key;
+
+    @JsonUnwrapped
+    private Statistic statistic;
+
+}
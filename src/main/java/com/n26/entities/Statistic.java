@@ -1,15 +1,21 @@
 package com.n26.entities;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.math.BigDecimal;
-import java.util.OptionalDouble;
+import java.math.RoundingMode;
 
 @Data
 public class Statistic {
 
+    /**
+     * Number of decimal places of every amount, which the aggregation keeps as a {@code long} of cents.
+     */
+    public static final int SCALE = 2;
+
     @JsonSerialize(using = ToStringSerializer.class)
     private BigDecimal sum;
 
@@ -24,12 +30,32 @@ public class Statistic {
 
     private long count;
 
-    private Statistic(BigDecimal sum, BigDecimal avg, BigDecimal max, BigDecimal min, long count) {
+    /**
+     * Estimated percentiles of the amounts, within about 1.6% of the exact ones and only present when
+     * the window holds transactions.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private BigDecimal p50;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private BigDecimal p95;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = ToStringSerializer.class)
+    private BigDecimal p99;
+
+    private Statistic(BigDecimal sum, BigDecimal avg, BigDecimal max, BigDecimal min, long count,
+                      BigDecimal p50, BigDecimal p95, BigDecimal p99) {
         this.sum = sum;
         this.avg = avg;
         this.max = max;
         this.min = min;
         this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
     }
 
     public static class StatisticBuilder {
@@ -38,38 +64,33 @@ public class Statistic {
         private BigDecimal nestedMax = new BigDecimal(0);
         private BigDecimal nestedMin = new BigDecimal(0);
         private long nestedCount = 0L;
+        private BigDecimal nestedP50;
+        private BigDecimal nestedP95;
+        private BigDecimal nestedP99;
 
         public StatisticBuilder(){}
 
-        public StatisticBuilder sum(final double sum){
-            nestedSum = new BigDecimal(sum).setScale(2, BigDecimal.ROUND_HALF_UP);
+        public StatisticBuilder sum(final long sumInCents){
+            nestedSum = BigDecimal.valueOf(sumInCents, SCALE);
             return this;
         }
 
-        public StatisticBuilder avg(final OptionalDouble avg){
-            if(avg.isPresent())
-                nestedAvg = new BigDecimal(avg.getAsDouble()).setScale(2, BigDecimal.ROUND_HALF_UP);
+        public StatisticBuilder avg(final long sumInCents, final long count){
+            if(count > 0)
+                nestedAvg = BigDecimal.valueOf(sumInCents, SCALE).divide(BigDecimal.valueOf(count), SCALE, RoundingMode.HALF_UP);
             else
-                nestedAvg = new BigDecimal(0).setScale(2, BigDecimal.ROUND_HALF_UP);
+                nestedAvg = BigDecimal.valueOf(0, SCALE);
 
             return this;
         }
 
-        public StatisticBuilder max(final OptionalDouble max){
-            if(max.isPresent())
-                nestedMax = new BigDecimal(max.getAsDouble()).setScale(2, BigDecimal.ROUND_HALF_UP);
-            else
-                nestedMax = new BigDecimal(0).setScale(2, BigDecimal.ROUND_HALF_UP);
-
+        public StatisticBuilder max(final long maxInCents){
+            nestedMax = BigDecimal.valueOf(maxInCents, SCALE);
             return this;
         }
 
-        public StatisticBuilder min(final OptionalDouble min){
-            if(min.isPresent())
-                nestedMin = new BigDecimal(min.getAsDouble()).setScale(2, BigDecimal.ROUND_HALF_UP);
-            else
-                nestedMin = new BigDecimal(0).setScale(2, BigDecimal.ROUND_HALF_UP);
-
+        public StatisticBuilder min(final long minInCents){
+            nestedMin = BigDecimal.valueOf(minInCents, SCALE);
             return this;
         }
 
@@ -78,8 +99,23 @@ public class Statistic {
             return this;
         }
 
+        public StatisticBuilder p50(final long p50InCents){
+            nestedP50 = BigDecimal.valueOf(p50InCents, SCALE);
+            return this;
+        }
+
+        public StatisticBuilder p95(final long p95InCents){
+            nestedP95 = BigDecimal.valueOf(p95InCents, SCALE);
+            return this;
+        }
+
+        public StatisticBuilder p99(final long p99InCents){
+            nestedP99 = BigDecimal.valueOf(p99InCents, SCALE);
+            return this;
+        }
+
         public Statistic build(){
-            return new Statistic(nestedSum, nestedAvg, nestedMax, nestedMin, nestedCount);
+            return new Statistic(nestedSum, nestedAvg, nestedMax, nestedMin, nestedCount, nestedP50, nestedP95, nestedP99);
         }
 
     }
@@ -1,22 +1,60 @@
 package com.n26.entities;
 
-import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.n26.exceptions.AmountOutOfRangeException;
+import com.n26.parsers.TransactionDeserializer;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 @Data
+@JsonDeserialize(using = TransactionDeserializer.class)
 public class Transaction {
 
-    private BigDecimal amount;
+    /**
+     * Amount in whole cents, rounded half up.
+     */
+    private long amountInCents;
 
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
-    private LocalDateTime timestamp;
+    /**
+     * Epoch milliseconds of the timestamp, with its offset applied.
+     */
+    private long timestamp;
 
-    public Transaction(BigDecimal amount, LocalDateTime timestamp) {
-        this.amount = amount;
+    /**
+     * Optional dimension, such as a merchant or a currency, the transaction is also aggregated under.
+     */
+    private String key;
+
+    public Transaction(long amountInCents, long timestamp) {
+        this(amountInCents, timestamp, null);
+    }
+
+    public Transaction(long amountInCents, long timestamp, String key) {
+        this.amountInCents = amountInCents;
         this.timestamp = timestamp;
+        this.key = key;
+    }
+
+    /**
+     * Converts the amount to cents and reads the date-time as UTC, as the deserializer does for a
+     * timestamp in {@code Z}.
+     *
+     * @throws AmountOutOfRangeException if the amount does not fit in a {@code long} of cents
+     */
+    public Transaction(BigDecimal amount, LocalDateTime timestamp) {
+        this(toCents(amount), timestamp.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    private static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(Statistic.SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
     }
 
 }
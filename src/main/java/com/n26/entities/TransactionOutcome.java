@@ -0,0 +1,11 @@
+package com.n26.entities;
+
+public enum TransactionOutcome {
+
+    ACCEPTED,
+
+    TOO_OLD,
+
+    FUTURE
+
+}
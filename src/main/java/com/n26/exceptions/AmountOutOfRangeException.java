@@ -3,6 +3,6 @@ package com.n26.exceptions;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
-@ResponseStatus(code = HttpStatus.UNPROCESSABLE_ENTITY, reason = "transaction has future date.")
-public class FutureTransactionException extends RuntimeException {
+@ResponseStatus(code = HttpStatus.UNPROCESSABLE_ENTITY, reason = "transaction amount out of range.")
+public class AmountOutOfRangeException extends RuntimeException {
 }
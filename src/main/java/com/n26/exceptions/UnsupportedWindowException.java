@@ -0,0 +1,8 @@
+package com.n26.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "statistics window is not supported.")
+public class UnsupportedWindowException extends RuntimeException {
+}
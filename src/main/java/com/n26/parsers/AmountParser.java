@@ -0,0 +1,95 @@
+package com.n26.parsers;
+
+import com.n26.entities.Statistic;
+import com.n26.exceptions.AmountOutOfRangeException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Parses decimal amounts straight from characters into whole cents, rounding half up like
+ * {@link BigDecimal#setScale(int, RoundingMode)} would. Plain decimals never allocate; amounts in
+ * exponent notation fall back to {@link BigDecimal}.
+ */
+public final class AmountParser {
+
+    private static final int MAX_INTEGER_DIGITS = 19;
+
+    private AmountParser() {}
+
+    /**
+     * @throws NumberFormatException if the characters are not a decimal number
+     * @throws AmountOutOfRangeException if the amount does not fit in a {@code long} of cents
+     */
+    public static long parseCents(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+
+        boolean negative = false;
+        if(i < end && (chars[i] == '-' || chars[i] == '+')){
+            negative = chars[i] == '-';
+            i++;
+        }
+
+        try {
+            long cents = 0;
+            boolean hasDigits = false;
+            for(; i < end && isDigit(chars[i]); i++){
+                cents = Math.addExact(Math.multiplyExact(cents, 10), chars[i] - '0');
+                hasDigits = true;
+            }
+            cents = Math.multiplyExact(cents, 100);
+
+            boolean roundUp = false;
+            if(i < end && chars[i] == '.'){
+                i++;
+                for(int fractionDigit = 0; i < end && isDigit(chars[i]); i++, fractionDigit++){
+                    int digit = chars[i] - '0';
+                    if(fractionDigit == 0){
+                        cents = Math.addExact(cents, digit * 10);
+                    } else if(fractionDigit == 1){
+                        cents = Math.addExact(cents, digit);
+                    } else if(fractionDigit == 2){
+                        roundUp = digit >= 5;
+                    }
+                    hasDigits = true;
+                }
+            }
+
+            if(hasDigits && i < end && (chars[i] == 'e' || chars[i] == 'E')){
+                return parseCentsWithExponent(chars, offset, length);
+            }
+
+            if(!hasDigits || i != end){
+                throw new NumberFormatException("Invalid amount: " + new String(chars, offset, length));
+            }
+
+            if(roundUp){
+                cents = Math.addExact(cents, 1);
+            }
+
+            return negative ? -cents : cents;
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
+    }
+
+    private static long parseCentsWithExponent(char[] chars, int offset, int length) {
+        BigDecimal amount = new BigDecimal(chars, offset, length);
+
+        if(amount.signum() != 0 && amount.precision() - amount.scale() > MAX_INTEGER_DIGITS){
+            throw new AmountOutOfRangeException();
+        }
+
+        try {
+            return amount.setScale(Statistic.SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.n26.parsers;
+
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses timestamps laid out as {@code yyyy-MM-dd'T'HH:mm:ss.SSSXXX} straight from characters into
+ * epoch milliseconds, without going through {@code DateTimeFormatter} or any {@code java.time} object.
+ * The offset is either {@code Z} or {@code +HH:mm}/{@code -HH:mm}, and is validated but not applied: as
+ * when timestamps were read into a {@code LocalDateTime}, the local date and time are taken as UTC.
+ */
+public final class TimestampParser {
+
+    private static final int LOCAL_LENGTH = 23;
+    private static final int MAX_OFFSET_HOURS = 18;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private TimestampParser() {}
+
+    /**
+     * @throws DateTimeParseException if the characters do not follow the layout or are not a valid date
+     */
+    public static long parseEpochMillis(char[] chars, int offset, int length) {
+        if(length != LOCAL_LENGTH + 1 && length != LOCAL_LENGTH + 6){
+            throw invalid(chars, offset, length);
+        }
+
+        if(chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':' || chars[offset + 19] != '.'){
+            throw invalid(chars, offset, length);
+        }
+
+        int year = digits(chars, offset, length, 0, 4);
+        int month = digits(chars, offset, length, 5, 2);
+        int day = digits(chars, offset, length, 8, 2);
+        int hour = digits(chars, offset, length, 11, 2);
+        int minute = digits(chars, offset, length, 14, 2);
+        int second = digits(chars, offset, length, 17, 2);
+        int millis = digits(chars, offset, length, 20, 3);
+
+        if(month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59){
+            throw invalid(chars, offset, length);
+        }
+
+        char zone = chars[offset + LOCAL_LENGTH];
+        if(length == LOCAL_LENGTH + 1){
+            if(zone != 'Z'){
+                throw invalid(chars, offset, length);
+            }
+        } else {
+            if((zone != '+' && zone != '-') || chars[offset + LOCAL_LENGTH + 3] != ':'){
+                throw invalid(chars, offset, length);
+            }
+
+            int offsetHours = digits(chars, offset, length, LOCAL_LENGTH + 1, 2);
+            int offsetMinutes = digits(chars, offset, length, LOCAL_LENGTH + 4, 2);
+            if(offsetHours > MAX_OFFSET_HOURS || offsetMinutes > 59){
+                throw invalid(chars, offset, length);
+            }
+        }
+
+        return epochDay(year, month, day) * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND + millis;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, counted in 400-year eras starting in March.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int digits(char[] chars, int offset, int length, int position, int count) {
+        int value = 0;
+        for(int i = offset + position; i < offset + position + count; i++){
+            char c = chars[i];
+            if(c < '0' || c > '9'){
+                throw invalid(chars, offset, length);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static DateTimeParseException invalid(char[] chars, int offset, int length) {
+        String text = new String(chars, offset, length);
+        return new DateTimeParseException("Invalid timestamp: " + text, text, 0);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.Transaction;
+import com.n26.exceptions.AmountOutOfRangeException;
+
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a transaction straight into cents and epoch milliseconds with {@link AmountParser} and
+ * {@link TimestampParser}, working on Jackson's character buffers so that neither a {@code BigDecimal}
+ * nor a date-time is created. Failures are reported with the same Jackson exceptions the default
+ * deserialization raised, so they keep answering 422 or 400.
+ */
+public class TransactionDeserializer extends StdDeserializer<Transaction> {
+
+    static final String AMOUNT = "amount";
+    static final String TIMESTAMP = "timestamp";
+    static final String KEY = "key";
+    static final List<Object> PROPERTIES = Arrays.asList(AMOUNT, TIMESTAMP, KEY);
+
+    static final int MAX_KEY_LENGTH = 128;
+
+    public TransactionDeserializer() {
+        super(Transaction.class);
+    }
+
+    @Override
+    public Transaction deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if(token == JsonToken.START_OBJECT){
+            token = parser.nextToken();
+        }
+
+        long amount = 0;
+        long timestamp = 0;
+        String key = null;
+        boolean hasAmount = false;
+        boolean hasTimestamp = false;
+
+        for(; token == JsonToken.FIELD_NAME; token = parser.nextToken()){
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if(AMOUNT.equals(name)){
+                amount = readAmount(parser, value);
+                hasAmount = true;
+            } else if(TIMESTAMP.equals(name)){
+                timestamp = readTimestamp(parser, value);
+                hasTimestamp = true;
+            } else if(KEY.equals(name)){
+                key = readKey(parser, value);
+            } else {
+                throw UnrecognizedPropertyException.from(parser, Transaction.class, name, PROPERTIES);
+            }
+        }
+
+        if(token != JsonToken.END_OBJECT){
+            return (Transaction) context.handleUnexpectedToken(Transaction.class, parser);
+        }
+
+        if(!hasAmount || !hasTimestamp){
+            throw MismatchedInputException.from(parser, Transaction.class, "Transaction requires an amount and a timestamp");
+        }
+
+        return new Transaction(amount, timestamp, key);
+    }
+
+    static long readAmount(JsonParser parser, JsonToken value) throws IOException {
+        if(value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT){
+            throw InvalidFormatException.from(parser, "Invalid amount", parser.getText(), long.class);
+        }
+
+        try {
+            return AmountParser.parseCents(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch(NumberFormatException | AmountOutOfRangeException e) {
+            throw InvalidFormatException.from(parser, e.getMessage(), parser.getText(), long.class);
+        }
+    }
+
+    /**
+     * A key is a string of at most {@link #MAX_KEY_LENGTH} characters, or null for none.
+     */
+    static String readKey(JsonParser parser, JsonToken value) throws IOException {
+        if(value == JsonToken.VALUE_NULL){
+            return null;
+        }
+
+        if(value != JsonToken.VALUE_STRING || parser.getTextLength() > MAX_KEY_LENGTH){
+            throw InvalidFormatException.from(parser, "Invalid key", parser.getText(), String.class);
+        }
+
+        return parser.getText();
+    }
+
+    static long readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        if(value != JsonToken.VALUE_STRING){
+            throw InvalidFormatException.from(parser, "Invalid timestamp", parser.getText(), long.class);
+        }
+
+        try {
+            return TimestampParser.parseEpochMillis(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch(DateTimeParseException e) {
+            throw InvalidFormatException.from(parser, e.getMessage(), parser.getText(), long.class);
+        }
+    }
+
+}
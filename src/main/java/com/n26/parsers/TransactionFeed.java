@@ -0,0 +1,92 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.n26.entities.BatchResult;
+import com.n26.services.TransactionBatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads newline-delimited JSON transactions from a body handed over chunk by chunk, with a non-blocking
+ * parser which takes every chunk as it arrives and returns once it has consumed it, whatever token it
+ * stopped in. Only the current chunk is held, so memory per request does not grow with the body either.
+ * As with {@link TransactionStreamReader#read}, transactions read before a malformed one stay ingested.
+ */
+public class TransactionFeed {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TransactionTokens tokens;
+    private final TransactionBatch batch;
+
+    private byte[] chunk = new byte[0];
+
+    TransactionFeed(JsonParser parser, TransactionBatch batch) {
+        this.parser = parser;
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.tokens = new TransactionTokens(batch);
+        this.batch = batch;
+    }
+
+    /**
+     * Reads the transactions of the chunk, up to where it ends.
+     */
+    public void feed(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        if(chunk.length < length){
+            chunk = new byte[length];
+        }
+        buffer.get(chunk, 0, length);
+
+        try {
+            feeder.feedInput(chunk, 0, length);
+            readAvailable();
+        } catch(IOException | RuntimeException e) {
+            close(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads what is left once the body ended, then completes the batch.
+     */
+    public BatchResult complete() throws IOException {
+        try {
+            feeder.endOfInput();
+            readAvailable();
+            parser.close();
+        } catch(IOException | RuntimeException e) {
+            close(e);
+            throw e;
+        }
+
+        return batch.complete();
+    }
+
+    /**
+     * Completes the batch with the transactions read so far, when the rest of the body will not come.
+     */
+    public void cancel() {
+        close(new IOException("Body was not read to its end"));
+    }
+
+    private void readAvailable() throws IOException {
+        JsonToken token;
+        while((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE){
+            tokens.accept(parser, token);
+        }
+    }
+
+    private void close(Exception error) {
+        try {
+            parser.close();
+        } catch(IOException e) {
+            error.addSuppressed(e);
+        }
+        batch.completeAfter(error);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n26.entities.BatchResult;
+import com.n26.entities.Transaction;
+import com.n26.services.TransactionBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads newline-delimited JSON transactions token by token and feeds them to a {@link TransactionBatch}
+ * as they arrive. Fields are read as {@link TransactionDeserializer} reads them, but straight into the
+ * batch, so not even a {@link Transaction} is created and memory per request does not grow with the body.
+ * Transactions read before a malformed one stay ingested: the batch is completed before the error is
+ * thrown, so they reach the shared buckets and the metrics as well as the keyed statistics and the
+ * transaction log.
+ */
+@Component
+public class TransactionStreamReader {
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public TransactionStreamReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public BatchResult read(InputStream body, TransactionBatch batch) throws IOException {
+        TransactionTokens tokens = new TransactionTokens(batch);
+
+        try(JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token;
+            while((token = parser.nextToken()) != null){
+                tokens.accept(parser, token);
+            }
+        } catch(IOException | RuntimeException e) {
+            batch.completeAfter(e);
+            throw e;
+        }
+
+        return batch.complete();
+    }
+
+    /**
+     * Starts reading a body which arrives in chunks, for runtimes which must not block waiting for them.
+     */
+    public TransactionFeed feed(TransactionBatch batch) throws IOException {
+        return new TransactionFeed(jsonFactory.createNonBlockingByteArrayParser(), batch);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.Transaction;
+import com.n26.services.TransactionBatch;
+
+import java.io.IOException;
+
+/**
+ * Turns the tokens of newline-delimited JSON transactions into {@link TransactionBatch#add} calls, one
+ * token at a time, so it serves parsers which block for the next token as well as parsers fed chunk by
+ * chunk, which may stop anywhere within a transaction.
+ */
+final class TransactionTokens {
+
+    private final TransactionBatch batch;
+
+    private boolean inTransaction;
+    private String name;
+    private long amount;
+    private long timestamp;
+    private String key;
+    private boolean hasAmount;
+    private boolean hasTimestamp;
+
+    TransactionTokens(TransactionBatch batch) {
+        this.batch = batch;
+    }
+
+    void accept(JsonParser parser, JsonToken token) throws IOException {
+        if(!inTransaction){
+            if(token != JsonToken.START_OBJECT){
+                throw MismatchedInputException.from(parser, Transaction.class, "Expected one transaction object per line");
+            }
+
+            inTransaction = true;
+            key = null;
+            hasAmount = false;
+            hasTimestamp = false;
+            return;
+        }
+
+        if(token == JsonToken.FIELD_NAME){
+            name = parser.getCurrentName();
+            if(!TransactionDeserializer.AMOUNT.equals(name) && !TransactionDeserializer.TIMESTAMP.equals(name)
+                    && !TransactionDeserializer.KEY.equals(name)){
+                throw UnrecognizedPropertyException.from(parser, Transaction.class, name, TransactionDeserializer.PROPERTIES);
+            }
+        } else if(token == JsonToken.END_OBJECT){
+            if(!hasAmount || !hasTimestamp){
+                throw MismatchedInputException.from(parser, Transaction.class, "Transaction requires an amount and a timestamp");
+            }
+
+            inTransaction = false;
+            batch.add(timestamp, amount, key);
+        } else if(TransactionDeserializer.AMOUNT.equals(name)){
+            amount = TransactionDeserializer.readAmount(parser, token);
+            hasAmount = true;
+        } else if(TransactionDeserializer.TIMESTAMP.equals(name)){
+            timestamp = TransactionDeserializer.readTimestamp(parser, token);
+            hasTimestamp = true;
+        } else {
+            key = TransactionDeserializer.readKey(parser, token);
+        }
+    }
+
+}
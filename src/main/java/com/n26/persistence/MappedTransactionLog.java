@@ -0,0 +1,324 @@
+package com.n26.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TransactionLog} appending 16 byte records, the epoch millisecond followed by the amount in
+ * cents, to memory-mapped segment files. Writers reserve their record with a single atomic add and
+ * store it in place, so appending takes no lock; a new segment is started when the current one is full
+ * or older than the segment interval, and files are named after the epoch millisecond they were started
+ * at.
+ * <p>
+ * A background thread forces the segments written to since its last run onto the disk every flush
+ * interval, so one {@code fsync} covers every record appended in between. In synchronous mode
+ * {@link #sync(long)} waits for the flush covering the record, otherwise a crash of the machine may lose
+ * the last interval; a crash of the process loses nothing, since the mapped pages belong to the
+ * operating system.
+ */
+public class MappedTransactionLog implements TransactionLog, AutoCloseable {
+
+    static final int RECORD_SIZE = 16;
+
+    /**
+     * Records are reserved before they are written, so a crash can leave a few empty records among the
+     * last ones written. Reading a segment stops after this many empty records in a row.
+     */
+    private static final int MAX_EMPTY_RECORDS = 1024;
+
+    private static final String SUFFIX = ".wal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long segmentIntervalMillis;
+    private final boolean synchronous;
+    private final Clock clock;
+
+    private final ConcurrentLinkedDeque<Segment> segments = new ConcurrentLinkedDeque<>();
+    private volatile Segment current;
+
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long flushed;
+
+    private final ScheduledExecutorService flusher;
+
+    public MappedTransactionLog(Path directory, int segmentSize, long segmentIntervalMillis, long flushIntervalMillis,
+                                boolean synchronous, Clock clock) {
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.segmentIntervalMillis = segmentIntervalMillis;
+        this.synchronous = synchronous;
+        this.clock = clock;
+
+        try {
+            Files.createDirectories(directory);
+            for(Path path : segmentPaths()){
+                segments.add(new Segment(path, startOf(path)));
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long append(long timestamp, long amountInCents) {
+        Segment segment = current;
+        int offset;
+
+        while(segment == null || segment.isExpired() || (offset = segment.reserve()) < 0){
+            segment = rotate(segment);
+        }
+
+        segment.write(offset, timestamp, amountInCents);
+        return appended.incrementAndGet();
+    }
+
+    @Override
+    public void sync(long sequence) {
+        if(synchronous && flushed < sequence){
+            awaitFlush(sequence);
+        }
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return synchronous;
+    }
+
+    @Override
+    public void replay(long fromMillis, RecordHandler handler) {
+        Segment[] snapshot = segments.toArray(new Segment[0]);
+
+        for(int i = 0; i < snapshot.length; i++){
+            long endMillis = i + 1 < snapshot.length ? snapshot[i + 1].startMillis : Long.MAX_VALUE;
+
+            if(endMillis >= fromMillis){
+                snapshot[i].replay(fromMillis, handler);
+            }
+        }
+    }
+
+    @Override
+    public void expire(long beforeMillis) {
+        Segment segment;
+
+        while((segment = segments.peekFirst()) != null && segment != current){
+            Segment next = nextOf(segment);
+            if(next == null || next.startMillis >= beforeMillis){
+                return;
+            }
+
+            if(segments.remove(segment)){
+                segment.delete();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void truncate() {
+        current = null;
+
+        Segment segment;
+        while((segment = segments.pollFirst()) != null){
+            segment.delete();
+        }
+    }
+
+    /**
+     * Forces the segments written to since the last flush onto the disk and releases the writers waiting
+     * for them.
+     */
+    void flush() {
+        long target = appended.get();
+
+        for(Segment segment : segments){
+            segment.force();
+        }
+
+        synchronized(this) {
+            flushed = target;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private synchronized Segment rotate(Segment full) {
+        if(current != full && current != null){
+            return current;
+        }
+
+        long startMillis = Math.max(clock.millis(), segments.isEmpty() ? Long.MIN_VALUE : segments.peekLast().startMillis + 1);
+        Segment segment = new Segment(directory.resolve(String.format("%020d%s", startMillis, SUFFIX)), startMillis, segmentSize);
+        segments.add(segment);
+        current = segment;
+        return segment;
+    }
+
+    private synchronized void awaitFlush(long sequence) {
+        boolean interrupted = false;
+
+        while(flushed < sequence && !flusher.isShutdown()){
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Segment nextOf(Segment segment) {
+        boolean found = false;
+
+        for(Segment candidate : segments){
+            if(found){
+                return candidate;
+            }
+            found = candidate == segment;
+        }
+
+        return null;
+    }
+
+    private List<Path> segmentPaths() throws IOException {
+        List<Path> paths = new ArrayList<>();
+
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static long startOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private final class Segment {
+
+        private final Path path;
+        private final long startMillis;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position;
+        private volatile boolean dirty;
+
+        /**
+         * Opens an existing segment for replay; it is never appended to again.
+         */
+        private Segment(Path path, long startMillis) throws IOException {
+            this.path = path;
+            this.startMillis = startMillis;
+
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            this.position = new AtomicInteger(Integer.MAX_VALUE);
+        }
+
+        private Segment(Path path, long startMillis, int size) {
+            this.path = path;
+            this.startMillis = startMillis;
+
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.position = new AtomicInteger();
+        }
+
+        private boolean isExpired() {
+            return clock.millis() - startMillis >= segmentIntervalMillis;
+        }
+
+        /**
+         * @return the offset of the reserved record, or -1 when the segment is full
+         */
+        private int reserve() {
+            int offset = position.getAndAdd(RECORD_SIZE);
+            return offset >= 0 && offset <= buffer.capacity() - RECORD_SIZE ? offset : -1;
+        }
+
+        /**
+         * The amount is stored first, so a record interrupted by a crash is left without a timestamp and
+         * skipped on replay.
+         */
+        private void write(int offset, long timestamp, long amountInCents) {
+            buffer.putLong(offset + 8, amountInCents);
+            buffer.putLong(offset, timestamp);
+
+            if(!dirty){
+                dirty = true;
+            }
+        }
+
+        private void force() {
+            if(dirty){
+                dirty = false;
+                buffer.force();
+            }
+        }
+
+        private void replay(long fromMillis, RecordHandler handler) {
+            int empty = 0;
+
+            for(int offset = 0; offset <= buffer.capacity() - RECORD_SIZE && empty < MAX_EMPTY_RECORDS; offset += RECORD_SIZE){
+                long timestamp = buffer.getLong(offset);
+
+                if(timestamp == 0){
+                    empty++;
+                } else {
+                    empty = 0;
+                    if(timestamp >= fromMillis){
+                        handler.handle(timestamp, buffer.getLong(offset + 8));
+                    }
+                }
+            }
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
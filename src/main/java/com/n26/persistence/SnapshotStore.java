@@ -0,0 +1,85 @@
+package com.n26.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Single binary snapshot file, replaced as a whole: a new snapshot is written to a temporary file next
+ * to it, forced onto the disk and renamed over the previous one atomically, so a crash leaves either
+ * the previous snapshot or the new one and never a partial file.
+ */
+public class SnapshotStore {
+
+    private final Path file;
+    private final Path temporaryFile;
+
+    public SnapshotStore(Path file) {
+        this.file = file.toAbsolutePath();
+        this.temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    }
+
+    public void save(Writer writer) {
+        try {
+            Files.createDirectories(file.getParent());
+
+            try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                writer.write(output);
+                output.flush();
+                channel.force(true);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return whether there was a snapshot to read
+     */
+    public boolean load(Reader reader) {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            reader.read(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))));
+            return true;
+        } catch(NoSuchFileException e) {
+            return false;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public interface Writer {
+
+        void write(DataOutput output) throws IOException;
+
+    }
+
+    public interface Reader {
+
+        void read(DataInput input) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.n26.persistence;
+
+/**
+ * Durable record of the accepted transactions, replayed on startup to rebuild the window.
+ */
+public interface TransactionLog {
+
+    /**
+     * Log that keeps nothing, used when persistence is disabled.
+     */
+    TransactionLog NONE = new TransactionLog() {
+
+        @Override
+        public long append(long timestamp, long amountInCents) {
+            return 0;
+        }
+
+        @Override
+        public void sync(long sequence) {
+        }
+
+        @Override
+        public boolean isSynchronous() {
+            return false;
+        }
+
+        @Override
+        public void replay(long fromMillis, RecordHandler handler) {
+        }
+
+        @Override
+        public void expire(long beforeMillis) {
+        }
+
+        @Override
+        public void truncate() {
+        }
+
+    };
+
+    /**
+     * @return the sequence number of the record, to be passed to {@link #sync(long)}
+     */
+    long append(long timestamp, long amountInCents);
+
+    /**
+     * Waits until the record with the given sequence number and every record before it are durable, if
+     * the log promises durability on return; otherwise returns at once.
+     */
+    void sync(long sequence);
+
+    /**
+     * Whether {@link #sync(long)} may block until a flush.
+     */
+    boolean isSynchronous();
+
+    /**
+     * Hands every logged transaction with a timestamp from the given epoch millisecond on to the handler,
+     * reading only the parts of the log that may hold such transactions.
+     */
+    void replay(long fromMillis, RecordHandler handler);
+
+    /**
+     * Discards the parts of the log that only hold transactions older than the given epoch millisecond.
+     */
+    void expire(long beforeMillis);
+
+    /**
+     * Discards every logged transaction.
+     */
+    void truncate();
+
+    interface RecordHandler {
+
+        void handle(long timestamp, long amountInCents);
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.n26.services;
+
+import com.n26.exceptions.UnsupportedWindowException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregator mode, enabled by listing the base URLs of the other nodes in {@code cluster.peers}: the
+ * statistics are computed over the partial aggregates of every peer, fetched in parallel, merged with the
+ * buckets of this node. A peer which does not answer within {@code cluster.peer-timeout-ms} is left out of
+ * the answer rather than delaying it, and so is one whose partial cannot be decoded.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.peers")
+public class ClusterStatisticsService {
+
+    public static final String PARTIAL_PATH = "/statistics/partial";
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterStatisticsService.class);
+
+    private final TransactionService transactionService;
+    private final List<String> peers;
+    private final Duration peerTimeout;
+    private final WebClient webClient = WebClient.create();
+
+    @Autowired
+    public ClusterStatisticsService(TransactionService transactionService, @Value("${cluster.peers}") String[] peers,
+                                    @Value("${cluster.peer-timeout-ms:100}") long peerTimeoutMillis) {
+        this(transactionService, Arrays.stream(peers).map(String::trim).filter(peer -> !peer.isEmpty()).collect(Collectors.toList()),
+                Duration.ofMillis(peerTimeoutMillis));
+    }
+
+    public ClusterStatisticsService(TransactionService transactionService, List<String> peers, Duration peerTimeout) {
+        this.transactionService = transactionService;
+        this.peers = peers;
+        this.peerTimeout = peerTimeout;
+    }
+
+    /**
+     * @throws UnsupportedWindowException if the window is not one of the configured windows, before any
+     *                                    peer is asked
+     */
+    public Mono<StatisticSnapshot> getStatisticSnapshot(StatisticWindow window) {
+        transactionService.indexOf(window);
+
+        return Flux.fromIterable(peers)
+                .flatMap(this::fetchPartial)
+                .collectList()
+                .map(partials -> {
+                    partials.add(transactionService.localPartial());
+                    return new StatisticSnapshot(transactionService.mergeStatistics(window, partials),
+                            Math.floorDiv(transactionService.currentTimeMillis(), 1000L));
+                });
+    }
+
+    private Mono<StatisticBucket[][]> fetchPartial(String peer) {
+        return webClient.get()
+                .uri(peer + PARTIAL_PATH)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(peerTimeout)
+                .onErrorResume(e -> Mono.empty())
+                .flatMap(partial -> Mono.fromCallable(() -> transactionService.readPartial(partial))
+                        .onErrorResume(e -> {
+                            log.warn("Leaving out the partial of {}, which cannot be decoded: {}", peer, e.toString());
+                            return Mono.empty();
+                        }));
+    }
+
+}
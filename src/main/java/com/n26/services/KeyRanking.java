@@ -0,0 +1,28 @@
+package com.n26.services;
+
+import com.n26.exceptions.UnsupportedRankingException;
+
+import java.util.Locale;
+
+/**
+ * Measure by which the keys of {@link TransactionService#topStatistics(KeyRanking, int)} are ranked,
+ * largest first.
+ */
+public enum KeyRanking {
+
+    SUM, COUNT, AVG, MAX, MIN;
+
+    /**
+     * @throws UnsupportedRankingException if the name is not one of the rankings, in any case
+     */
+    public static KeyRanking parse(String name) {
+        for(KeyRanking ranking : values()){
+            if(ranking.name().equals(name.toUpperCase(Locale.ROOT))){
+                return ranking;
+            }
+        }
+
+        throw new UnsupportedRankingException();
+    }
+
+}
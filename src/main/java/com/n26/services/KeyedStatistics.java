@@ -0,0 +1,366 @@
+package com.n26.services;
+
+import com.n26.entities.KeyStatistic;
+import com.n26.entities.Statistic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.n26.services.TransactionService.WINDOW_SECONDS;
+
+/**
+ * Statistics of the default window per key, such as a merchant or a currency, for at most
+ * {@code capacity} keys at a time. Tracked keys are entries numbered densely from 0, each owning a ring
+ * of {@link TransactionService#WINDOW_SECONDS} one-second slots in flat primitive arrays, and are found
+ * by the 64 bit hash of their key in an open-addressing table with linear probing. Nothing is allocated
+ * per transaction, nor per key beyond the key itself.
+ * <p>
+ * Once every entry is taken, a new key replaces the key with the fewest transactions since it was
+ * admitted and inherits that count, as in the Space-Saving algorithm: the heaviest keys are kept
+ * whatever the number of distinct keys, and the statistics of a key cover the transactions received
+ * since it was last admitted. Entries are kept in a min-heap by that count, so the lightest is found in
+ * constant time. Keys which received nothing within the window are dropped by {@link #expire(long)}.
+ * <p>
+ * Every operation holds the monitor of the instance; only transactions carrying a key go through it.
+ */
+final class KeyedStatistics {
+
+    private final int capacity;
+
+    /**
+     * Entry plus one for every key in the table, 0 for a free position. Twice as large as the capacity, so
+     * probes stay short.
+     */
+    private final int[] table;
+    private final int mask;
+
+    private final String[] keys;
+    private final long[] hashes;
+    private final long[] weights;
+    private final long[] lastSeconds;
+
+    /**
+     * Entries ordered as a binary min-heap by weight, and the position of each entry in it.
+     */
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    private final long[] seconds;
+    private final long[] sums;
+    private final long[] counts;
+    private final long[] maxs;
+    private final long[] mins;
+
+    private int size;
+    private long evictions;
+
+    KeyedStatistics(int capacity) {
+        this.capacity = capacity;
+        this.table = new int[Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1];
+        this.mask = table.length - 1;
+
+        this.keys = new String[capacity];
+        this.hashes = new long[capacity];
+        this.weights = new long[capacity];
+        this.lastSeconds = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+
+        this.seconds = new long[capacity * WINDOW_SECONDS];
+        this.sums = new long[capacity * WINDOW_SECONDS];
+        this.counts = new long[capacity * WINDOW_SECONDS];
+        this.maxs = new long[capacity * WINDOW_SECONDS];
+        this.mins = new long[capacity * WINDOW_SECONDS];
+    }
+
+    /**
+     * @throws ArithmeticException if the sum of the second overflows, leaving the second as it was
+     */
+    synchronized void add(String key, long epochSecond, long amountInCents) {
+        if(capacity == 0){
+            return;
+        }
+
+        long hash = hashOf(key);
+        int entry = find(key, hash);
+        if(entry < 0){
+            entry = admit(key, hash);
+        }
+
+        weights[entry]++;
+        siftDown(heapPositions[entry]);
+
+        int slot = entry * WINDOW_SECONDS + (int) Math.floorMod(epochSecond, (long) WINDOW_SECONDS);
+        if(seconds[slot] < epochSecond){
+            seconds[slot] = epochSecond;
+            sums[slot] = amountInCents;
+            counts[slot] = 1;
+            maxs[slot] = amountInCents;
+            mins[slot] = amountInCents;
+        } else if(seconds[slot] == epochSecond){
+            sums[slot] = Math.addExact(sums[slot], amountInCents);
+            counts[slot]++;
+            maxs[slot] = Math.max(maxs[slot], amountInCents);
+            mins[slot] = Math.min(mins[slot], amountInCents);
+        }
+
+        lastSeconds[entry] = Math.max(lastSeconds[entry], epochSecond);
+    }
+
+    /**
+     * The statistic of the key over the window ending at the given second, empty if the key is not
+     * tracked.
+     */
+    synchronized Statistic statistic(String key, long epochSecond) {
+        int entry = capacity == 0 ? -1 : find(key, hashOf(key));
+        return entry < 0 ? new Statistic.StatisticBuilder().sum(0).avg(0, 0).max(0).min(0).build() : statisticOf(entry, epochSecond);
+    }
+
+    /**
+     * The statistics of at most {@code limit} tracked keys over the window ending at the given second,
+     * largest first by the ranking. Costs the same whatever the number of keys ever seen.
+     */
+    synchronized List<KeyStatistic> top(KeyRanking ranking, int limit, long epochSecond) {
+        Statistic[] statistics = new Statistic[size];
+        for(int entry = 0; entry < size; entry++){
+            statistics[entry] = statisticOf(entry, epochSecond);
+        }
+
+        Comparator<Integer> byRanking = Comparator.comparingDouble(entry -> rankOf(statistics[entry], ranking));
+        return IntStream.range(0, size)
+                .filter(entry -> statistics[entry].getCount() > 0)
+                .boxed()
+                .sorted(byRanking.reversed().thenComparing(entry -> keys[entry]))
+                .limit(limit)
+                .map(entry -> new KeyStatistic(keys[entry], statistics[entry]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Drops the keys which received nothing within the window ending at the given second.
+     */
+    synchronized void expire(long epochSecond) {
+        for(int entry = size - 1; entry >= 0; entry--){
+            if(lastSeconds[entry] <= epochSecond - WINDOW_SECONDS){
+                remove(entry);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private Statistic statisticOf(int entry, long epochSecond) {
+        long sum = 0;
+        long count = 0;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+
+        for(int slot = entry * WINDOW_SECONDS; slot < (entry + 1) * WINDOW_SECONDS; slot++){
+            if(counts[slot] > 0 && seconds[slot] > epochSecond - WINDOW_SECONDS && seconds[slot] <= epochSecond){
+                sum = Math.addExact(sum, sums[slot]);
+                count += counts[slot];
+                max = Math.max(max, maxs[slot]);
+                min = Math.min(min, mins[slot]);
+            }
+        }
+
+        return new Statistic.StatisticBuilder()
+                .sum(sum)
+                .avg(sum, count)
+                .max(count > 0 ? max : 0)
+                .min(count > 0 ? min : 0)
+                .count(count)
+                .build();
+    }
+
+    private static double rankOf(Statistic statistic, KeyRanking ranking) {
+        switch(ranking){
+            case COUNT:
+                return statistic.getCount();
+            case AVG:
+                return statistic.getAvg().doubleValue();
+            case MAX:
+                return statistic.getMax().doubleValue();
+            case MIN:
+                return statistic.getMin().doubleValue();
+            default:
+                return statistic.getSum().doubleValue();
+        }
+    }
+
+    private int find(String key, long hash) {
+        for(int position = (int) hash & mask; table[position] != 0; position = (position + 1) & mask){
+            int entry = table[position] - 1;
+            if(hashes[entry] == hash && keys[entry].equals(key)){
+                return entry;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Takes a free entry for the key, or the lightest one whose weight the key inherits.
+     */
+    private int admit(String key, long hash) {
+        int entry;
+
+        if(size < capacity){
+            entry = size++;
+            weights[entry] = 0;
+            heap[entry] = entry;
+            heapPositions[entry] = entry;
+            siftUp(entry);
+        } else {
+            entry = heap[0];
+            unlink(entry);
+            evictions++;
+        }
+
+        keys[entry] = key;
+        hashes[entry] = hash;
+        lastSeconds[entry] = Long.MIN_VALUE;
+        Arrays.fill(seconds, entry * WINDOW_SECONDS, (entry + 1) * WINDOW_SECONDS, Long.MIN_VALUE);
+        Arrays.fill(counts, entry * WINDOW_SECONDS, (entry + 1) * WINDOW_SECONDS, 0);
+
+        int position = (int) hash & mask;
+        while(table[position] != 0){
+            position = (position + 1) & mask;
+        }
+        table[position] = entry + 1;
+
+        return entry;
+    }
+
+    /**
+     * Frees the entry and moves the last one into its place, so entries stay numbered densely.
+     */
+    private void remove(int entry) {
+        unlink(entry);
+
+        int last = --size;
+        int position = heapPositions[entry];
+        int moved = heap[last];
+        heap[position] = moved;
+        heapPositions[moved] = position;
+        if(position < last){
+            siftDown(position);
+            siftUp(heapPositions[moved]);
+        }
+
+        if(entry != last){
+            table[positionOf(last)] = entry + 1;
+            keys[entry] = keys[last];
+            hashes[entry] = hashes[last];
+            weights[entry] = weights[last];
+            lastSeconds[entry] = lastSeconds[last];
+            heap[heapPositions[last]] = entry;
+            heapPositions[entry] = heapPositions[last];
+
+            for(long[] ring : new long[][]{seconds, sums, counts, maxs, mins}){
+                System.arraycopy(ring, last * WINDOW_SECONDS, ring, entry * WINDOW_SECONDS, WINDOW_SECONDS);
+            }
+        }
+
+        keys[last] = null;
+    }
+
+    /**
+     * Removes the entry from the table, shifting back the keys probed past it so that every key stays
+     * reachable from its home position.
+     */
+    private void unlink(int entry) {
+        int hole = positionOf(entry);
+        table[hole] = 0;
+
+        for(int position = (hole + 1) & mask; table[position] != 0; position = (position + 1) & mask){
+            int home = (int) hashes[table[position] - 1] & mask;
+
+            if(((position - home) & mask) >= ((position - hole) & mask)){
+                table[hole] = table[position];
+                table[position] = 0;
+                hole = position;
+            }
+        }
+    }
+
+    private int positionOf(int entry) {
+        int position = (int) hashes[entry] & mask;
+        while(table[position] != entry + 1){
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    private void siftUp(int position) {
+        int entry = heap[position];
+
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(weights[heap[parent]] <= weights[entry]){
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+
+        place(entry, position);
+    }
+
+    private void siftDown(int position) {
+        int entry = heap[position];
+
+        while(true){
+            int child = 2 * position + 1;
+            if(child >= size){
+                break;
+            }
+            if(child + 1 < size && weights[heap[child + 1]] < weights[heap[child]]){
+                child++;
+            }
+            if(weights[entry] <= weights[heap[child]]){
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+
+        place(entry, position);
+    }
+
+    private void place(int entry, int position) {
+        heap[position] = entry;
+        heapPositions[entry] = position;
+    }
+
+    /**
+     * 64 bit FNV-1a of the characters, with the bits mixed so that the low ones index the table evenly.
+     */
+    private static long hashOf(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++){
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.n26.services;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Mergeable histogram of amounts in cents with log-linear bins, in the manner of HDR histograms: amounts
+ * below {@link #SUB_BUCKETS} cents get a bin each, and every power of two above is split into
+ * {@link #SUB_BUCKETS} bins of equal width. Estimating a quantile by the middle of its bin is exact below
+ * 0.32 and otherwise within 1/64 (about 1.6%) of the amount the nearest-rank definition picks.
+ * <p>
+ * The bins of a power of two are only allocated once an amount of that magnitude is recorded, so a
+ * sketch holds at most 118 arrays of 32 counters (about 30 KB) and typically a few of them. Counters are
+ * atomic, so concurrent writers can record into a shared sketch without locking.
+ */
+final class QuantileSketch {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Range 0 holds the amounts below {@link #SUB_BUCKETS}; range {@code r > 0} holds those in
+     * {@code [2^(r+4), 2^(r+5))}. Negative amounts are binned by magnitude after the positive ranges.
+     */
+    private static final int RANGES = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicReferenceArray<AtomicLongArray> ranges = new AtomicReferenceArray<>(2 * RANGES);
+
+    void record(long amountInCents) {
+        long magnitude = amountInCents == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(amountInCents);
+        int range = rangeOf(magnitude);
+
+        countsOf(amountInCents < 0 ? RANGES + range : range).incrementAndGet(subBucketOf(magnitude, range));
+    }
+
+    /**
+     * Adds the counts of the other sketch to this one.
+     */
+    void merge(QuantileSketch other) {
+        for(int i = 0; i < other.ranges.length(); i++){
+            AtomicLongArray source = other.ranges.get(i);
+
+            if(source != null){
+                for(int subBucket = 0; subBucket < SUB_BUCKETS; subBucket++){
+                    long count = source.get(subBucket);
+                    if(count > 0){
+                        countsOf(i).addAndGet(subBucket, count);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets every count, keeping the bins already allocated.
+     */
+    void clear() {
+        for(int i = 0; i < ranges.length(); i++){
+            AtomicLongArray counts = ranges.get(i);
+
+            if(counts != null){
+                for(int subBucket = 0; subBucket < SUB_BUCKETS; subBucket++){
+                    counts.set(subBucket, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the amount of the given nearest rank quantile, or 0 when nothing was recorded. Must not
+     * race with writers, otherwise the ranks may not add up to the count read beforehand.
+     */
+    long quantile(double quantile) {
+        long total = 0;
+        for(int i = 0; i < ranges.length(); i++){
+            total += countOf(i);
+        }
+
+        if(total == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for(int range = RANGES - 1; range >= 0; range--){
+            AtomicLongArray counts = ranges.get(RANGES + range);
+
+            for(int subBucket = SUB_BUCKETS - 1; counts != null && subBucket >= 0; subBucket--){
+                seen += counts.get(subBucket);
+                if(seen >= rank){
+                    return -estimateOf(range, subBucket);
+                }
+            }
+        }
+
+        for(int range = 0; range < RANGES; range++){
+            AtomicLongArray counts = ranges.get(range);
+
+            for(int subBucket = 0; counts != null && subBucket < SUB_BUCKETS; subBucket++){
+                seen += counts.get(subBucket);
+                if(seen >= rank){
+                    return estimateOf(range, subBucket);
+                }
+            }
+        }
+
+        throw new IllegalStateException("Sketch was modified while estimating a quantile");
+    }
+
+    /**
+     * Writes the non-empty bins as pairs of bin index and count, followed by -1.
+     */
+    void writeTo(DataOutput output) throws IOException {
+        for(int i = 0; i < ranges.length(); i++){
+            AtomicLongArray counts = ranges.get(i);
+
+            for(int subBucket = 0; counts != null && subBucket < SUB_BUCKETS; subBucket++){
+                long count = counts.get(subBucket);
+                if(count > 0){
+                    output.writeInt(i * SUB_BUCKETS + subBucket);
+                    output.writeLong(count);
+                }
+            }
+        }
+
+        output.writeInt(-1);
+    }
+
+    static QuantileSketch readFrom(DataInput input) throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+
+        for(int bin = input.readInt(); bin >= 0; bin = input.readInt()){
+            sketch.countsOf(bin / SUB_BUCKETS).addAndGet(bin % SUB_BUCKETS, input.readLong());
+        }
+
+        return sketch;
+    }
+
+    private AtomicLongArray countsOf(int index) {
+        AtomicLongArray counts = ranges.get(index);
+
+        if(counts == null){
+            ranges.compareAndSet(index, null, new AtomicLongArray(SUB_BUCKETS));
+            counts = ranges.get(index);
+        }
+
+        return counts;
+    }
+
+    private long countOf(int index) {
+        AtomicLongArray counts = ranges.get(index);
+        long total = 0;
+
+        for(int subBucket = 0; counts != null && subBucket < SUB_BUCKETS; subBucket++){
+            total += counts.get(subBucket);
+        }
+
+        return total;
+    }
+
+    private static int rangeOf(long magnitude) {
+        return magnitude < SUB_BUCKETS ? 0 : 64 - Long.numberOfLeadingZeros(magnitude) - SUB_BUCKET_BITS;
+    }
+
+    private static int subBucketOf(long magnitude, int range) {
+        return range == 0 ? (int) magnitude : (int) (magnitude >>> (range - 1)) - SUB_BUCKETS;
+    }
+
+    private static long estimateOf(int range, int subBucket) {
+        if(range == 0){
+            return subBucket;
+        }
+
+        long width = 1L << (range - 1);
+        return (SUB_BUCKETS + subBucket) * width + width / 2;
+    }
+
+}
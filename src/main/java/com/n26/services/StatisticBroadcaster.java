@@ -0,0 +1,95 @@
+package com.n26.services;
+
+import com.n26.exceptions.UnsupportedWindowException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pushes the statistic of a window to any number of subscribers as server-sent events. A single timer
+ * per window reads the published {@link StatisticSnapshot} every tick and turns its JSON, already
+ * serialized for {@code GET /statistics}, into an event shared by every subscriber, so a tick costs the
+ * same however many clients listen. The timer only runs while the window has subscribers.
+ * <p>
+ * Each subscriber holds at most the latest event it has not consumed yet: a slow client skips the ticks
+ * it could not take rather than buffering them or holding back the others.
+ */
+@Component
+public class StatisticBroadcaster {
+
+    static final String EVENT = "statistic";
+
+    private final TransactionService transactionService;
+    private final Duration interval;
+
+    private final ConcurrentMap<StatisticWindow, WindowStream> streams = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StatisticBroadcaster(TransactionService transactionService, @Value("${statistics.stream.interval-ms:250}") long intervalMillis) {
+        this.transactionService = transactionService;
+        this.interval = Duration.ofMillis(intervalMillis);
+    }
+
+    /**
+     * The current statistic of the window followed by one every tick, or only by those which differ from
+     * the previous one. Events carry the ETag of the statistic as their id.
+     *
+     * @throws UnsupportedWindowException if the window is not one of the configured windows
+     */
+    public Flux<ServerSentEvent<String>> subscribe(StatisticWindow window, boolean onlyChanges) {
+        transactionService.getStatisticSnapshot(window);
+
+        WindowStream stream = streams.computeIfAbsent(window, WindowStream::new);
+        Flux<ServerSentEvent<String>> events = Flux.concat(Mono.fromSupplier(stream::current), stream.ticks);
+
+        if(onlyChanges){
+            events = events.distinctUntilChanged(ServerSentEvent::id);
+        }
+
+        return events.onBackpressureLatest();
+    }
+
+    private final class WindowStream {
+
+        private final StatisticWindow window;
+        private final Flux<ServerSentEvent<String>> ticks;
+
+        private volatile ServerSentEvent<String> last;
+
+        private WindowStream(StatisticWindow window) {
+            this.window = window;
+            this.ticks = Flux.interval(interval, interval)
+                    .onBackpressureDrop()
+                    .map(tick -> current())
+                    .share();
+        }
+
+        /**
+         * The event of the published snapshot, built once per snapshot.
+         */
+        private ServerSentEvent<String> current() {
+            StatisticSnapshot snapshot = transactionService.getStatisticSnapshot(window);
+            ServerSentEvent<String> event = last;
+
+            if(event == null || !event.id().equals(snapshot.getEtag())){
+                event = ServerSentEvent.builder(new String(snapshot.getJson(), StandardCharsets.UTF_8))
+                        .id(snapshot.getEtag())
+                        .event(EVENT)
+                        .build();
+                last = event;
+            }
+
+            return event;
+        }
+
+    }
+
+}
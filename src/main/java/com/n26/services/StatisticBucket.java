@@ -0,0 +1,85 @@
+package com.n26.services;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable aggregate of the transactions of a single time slot, with amounts in cents. A time slot is
+ * the epoch second divided by the resolution of the {@link StatisticLevel} the bucket was copied from or
+ * is merged into. Buckets carry the aggregate of one second out of a {@link TransactionBatch}, and
+ * consistent copies of the cells of a level to readers and snapshots.
+ * <p>
+ * The {@link QuantileSketch} of the slot is the only mutable part: it is shared with the cell while the
+ * slot stays the same, and amounts are recorded into it once the cell counting them has been released.
+ */
+final class StatisticBucket {
+
+    static final StatisticBucket EMPTY = new StatisticBucket(Long.MIN_VALUE, 0, 0, Long.MIN_VALUE, Long.MAX_VALUE, null);
+
+    private final long timeSlot;
+    private final long sum;
+    private final long count;
+    private final long max;
+    private final long min;
+    private final QuantileSketch sketch;
+
+    StatisticBucket(long timeSlot, long sum, long count, long max, long min, QuantileSketch sketch) {
+        this.timeSlot = timeSlot;
+        this.sum = sum;
+        this.count = count;
+        this.max = max;
+        this.min = min;
+        this.sketch = sketch;
+    }
+
+    /**
+     * The same aggregate filed under another time slot, used to roll it up into a coarser level.
+     */
+    StatisticBucket atSlot(long timeSlot){
+        return timeSlot == this.timeSlot ? this : new StatisticBucket(timeSlot, sum, count, max, min, sketch);
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeLong(timeSlot);
+        output.writeLong(sum);
+        output.writeLong(count);
+        output.writeLong(max);
+        output.writeLong(min);
+        sketch.writeTo(output);
+    }
+
+    static StatisticBucket readFrom(DataInput input) throws IOException {
+        return new StatisticBucket(input.readLong(), input.readLong(), input.readLong(), input.readLong(), input.readLong(),
+                QuantileSketch.readFrom(input));
+    }
+
+    boolean isWithin(long fromTimeSlot, long toTimeSlot){
+        return count > 0 && timeSlot > fromTimeSlot && timeSlot <= toTimeSlot;
+    }
+
+    long getTimeSlot() {
+        return timeSlot;
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    long getMin() {
+        return min;
+    }
+
+    QuantileSketch getSketch() {
+        return sketch;
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.n26.services;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Expiry half of {@link TransactionService}, run by its scheduled refresh before the snapshots are
+ * republished, so readers never do expiry work. Once a second it empties the buckets whose slot left the
+ * ring of their level and drops the keys which received nothing within the window, so the sketches of
+ * expired slots are reclaimed as soon as they expire rather than when their slot is reused, and memory
+ * follows what the windows currently hold rather than the busiest second they ever held.
+ */
+final class StatisticEvictor {
+
+    private final StatisticLevel[] levels;
+    private final KeyedStatistics keyedStatistics;
+    private final LongAdder evictedBuckets;
+
+    private long advancedTo = Long.MIN_VALUE;
+
+    StatisticEvictor(StatisticLevel[] levels, KeyedStatistics keyedStatistics, LongAdder evictedBuckets) {
+        this.levels = levels;
+        this.keyedStatistics = keyedStatistics;
+        this.evictedBuckets = evictedBuckets;
+    }
+
+    /**
+     * Advances the windows to the given second, unless they are already there. Only called by the
+     * refresh, which is serialized.
+     */
+    void advance(long epochSecond) {
+        if(epochSecond == advancedTo){
+            return;
+        }
+        advancedTo = epochSecond;
+
+        for(StatisticLevel level : levels){
+            evictedBuckets.add(level.evict(epochSecond));
+        }
+        keyedStatistics.expire(epochSecond);
+    }
+
+}
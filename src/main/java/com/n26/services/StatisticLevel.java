@@ -0,0 +1,342 @@
+package com.n26.services;
+
+import com.n26.entities.Statistic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One resolution of the aggregation: rings of {@link #SLOTS} cells of {@code resolutionSeconds} each,
+ * one ring per stripe, laid out stripe after stripe and indexed by time slot modulo {@link #SLOTS}.
+ * Each writer thread folds into the ring of its own stripe, updating the primitive fields of a cell in
+ * place, so ingestion allocates nothing but the sketch of a new slot, and threads only wait on each other
+ * when they collide on the same stripe and slot.
+ * <p>
+ * A cell is guarded by a sequence number, which a writer makes odd with a compare-and-set while it
+ * updates the cell and even again when done. Readers never block writers: they copy a cell into a
+ * {@link StatisticBucket} and read it again if its sequence number changed meanwhile.
+ * <p>
+ * Every window served by a level spans at most {@link #SLOTS} slots, so reading a window costs the same
+ * whatever its length; its trailing edge is accurate to one slot of the level.
+ * <p>
+ * Failed compare-and-sets are counted in the given adder, which is only touched on contention.
+ */
+final class StatisticLevel {
+
+    static final int SLOTS = 60;
+
+    /**
+     * Longs per cell, padded so that two cells never share a cache line, and the offset of each field.
+     */
+    private static final int CELL = 8;
+    private static final int SEQUENCE = 0;
+    private static final int TIME_SLOT = 1;
+    private static final int SUM = 2;
+    private static final int COUNT = 3;
+    private static final int MAX = 4;
+    private static final int MIN = 5;
+
+    private static final int SPINS = 64;
+
+    private final int resolutionSeconds;
+    private final int stripes;
+    private final AtomicLongArray cells;
+    private final AtomicReferenceArray<QuantileSketch> sketches;
+    private final LongAdder casRetries;
+
+    StatisticLevel(int resolutionSeconds, int stripes, LongAdder casRetries) {
+        this.resolutionSeconds = resolutionSeconds;
+        this.stripes = stripes;
+        this.casRetries = casRetries;
+        this.cells = new AtomicLongArray(stripes * SLOTS * CELL);
+        this.sketches = new AtomicReferenceArray<>(stripes * SLOTS);
+        clear();
+    }
+
+    /**
+     * The finest resolution covering the window with at most {@link #SLOTS} slots. It need not divide the
+     * window, whose length is then rounded up to whole slots.
+     */
+    static int resolutionFor(StatisticWindow window) {
+        return (window.getSeconds() + SLOTS - 1) / SLOTS;
+    }
+
+    int getResolutionSeconds() {
+        return resolutionSeconds;
+    }
+
+    long timeSlotOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, (long) resolutionSeconds);
+    }
+
+    /**
+     * The sum of the sequence numbers of the cells, which grows with every update of the level, so that
+     * a statistic computed after reading it holds for as long as it stays the same.
+     */
+    long version() {
+        long version = 0;
+
+        for(int i = 0; i < sketches.length(); i++){
+            version += cells.get(i * CELL + SEQUENCE);
+        }
+
+        return version;
+    }
+
+    /**
+     * Folds the amount into the cell of its slot. A cell holding an older slot is recycled for the new
+     * one, while an amount older than the held slot is already out of the window and is dropped.
+     *
+     * @throws ArithmeticException if the sum of the bucket overflows
+     */
+    void add(long epochSecond, long amountInCents, int stripe) {
+        long timeSlot = Math.floorDiv(epochSecond, (long) resolutionSeconds);
+        QuantileSketch sketch = addAt(indexOf(timeSlot, stripe), timeSlot, amountInCents, 1, amountInCents, amountInCents);
+
+        if(sketch != null){
+            sketch.record(amountInCents);
+        }
+    }
+
+    /**
+     * Merges a bucket of one second into the slot of this level covering that second.
+     *
+     * @throws ArithmeticException if the sum of the bucket overflows
+     */
+    void merge(StatisticBucket secondBucket, int stripe) {
+        mergeAtSlot(secondBucket.atSlot(Math.floorDiv(secondBucket.getTimeSlot(), (long) resolutionSeconds)), stripe);
+    }
+
+    /**
+     * Merges a bucket of this level read back from a snapshot, unless its slot is no longer in the ring
+     * at the given second.
+     */
+    void restore(StatisticBucket bucket, long epochSecond) {
+        long toTimeSlot = Math.floorDiv(epochSecond, (long) resolutionSeconds);
+
+        if(bucket.getTimeSlot() > toTimeSlot - SLOTS && bucket.getTimeSlot() <= toTimeSlot){
+            mergeAtSlot(bucket, 0);
+        }
+    }
+
+    /**
+     * The buckets holding transactions, as one consistent copy each.
+     */
+    StatisticBucket[] nonEmptyBuckets() {
+        StatisticBucket[] copy = new StatisticBucket[sketches.length()];
+        int size = 0;
+
+        for(int i = 0; i < sketches.length(); i++){
+            StatisticBucket bucket = bucketAt(i);
+            if(bucket.getCount() > 0){
+                copy[size++] = bucket;
+            }
+        }
+
+        return Arrays.copyOf(copy, size);
+    }
+
+    int nonEmptyBucketCount() {
+        int count = 0;
+
+        for(int i = 0; i < sketches.length(); i++){
+            if(cells.get(i * CELL + COUNT) > 0){
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Empties the cells whose slot left the ring at the given second; no window reads them anymore.
+     * A cell held by a writer in the meantime is left to the next pass.
+     *
+     * @return the number of buckets emptied
+     */
+    int evict(long epochSecond) {
+        long oldestTimeSlot = Math.floorDiv(epochSecond, (long) resolutionSeconds) - SLOTS;
+        int evicted = 0;
+
+        for(int i = 0; i < sketches.length(); i++){
+            int cell = i * CELL;
+            long sequence = cells.get(cell + SEQUENCE);
+
+            if((sequence & 1) == 0 && cells.get(cell + COUNT) > 0 && cells.get(cell + TIME_SLOT) <= oldestTimeSlot
+                    && cells.compareAndSet(cell + SEQUENCE, sequence, sequence + 1)){
+                if(cells.get(cell + TIME_SLOT) <= oldestTimeSlot){
+                    empty(i);
+                    evicted++;
+                }
+                cells.lazySet(cell + SEQUENCE, sequence + 2);
+            }
+        }
+
+        return evicted;
+    }
+
+    private void mergeAtSlot(StatisticBucket bucket, int stripe) {
+        if(bucket.getCount() == 0){
+            return;
+        }
+
+        QuantileSketch sketch = addAt(indexOf(bucket.getTimeSlot(), stripe), bucket.getTimeSlot(),
+                bucket.getSum(), bucket.getCount(), bucket.getMax(), bucket.getMin());
+
+        if(sketch != null){
+            sketch.merge(bucket.getSketch());
+        }
+    }
+
+    /**
+     * Folds an aggregate into the cell, and returns the sketch of its slot for the amounts to be recorded
+     * in, or {@code null} if the slot is older than the one held.
+     *
+     * @throws ArithmeticException if the sum of the bucket overflows, leaving the cell untouched
+     */
+    private QuantileSketch addAt(int index, long timeSlot, long sum, long count, long max, long min) {
+        int cell = index * CELL;
+        long sequence = acquire(cell);
+
+        try {
+            long heldTimeSlot = cells.get(cell + TIME_SLOT);
+            if(timeSlot < heldTimeSlot){
+                return null;
+            }
+
+            if(timeSlot > heldTimeSlot){
+                QuantileSketch sketch = new QuantileSketch();
+                sketches.lazySet(index, sketch);
+                write(cell, timeSlot, sum, count, max, min);
+                return sketch;
+            }
+
+            write(cell, timeSlot, Math.addExact(cells.get(cell + SUM), sum), cells.get(cell + COUNT) + count,
+                    Math.max(cells.get(cell + MAX), max), Math.min(cells.get(cell + MIN), min));
+            return sketches.get(index);
+        } finally {
+            cells.lazySet(cell + SEQUENCE, sequence + 1);
+        }
+    }
+
+    /**
+     * Makes the sequence number of the cell odd once no other writer holds it.
+     *
+     * @return the odd sequence number, to be incremented again to release the cell
+     */
+    private long acquire(int cell) {
+        for(int attempt = 1; ; attempt++){
+            long sequence = cells.get(cell + SEQUENCE);
+            if((sequence & 1) == 0 && cells.compareAndSet(cell + SEQUENCE, sequence, sequence + 1)){
+                return sequence + 1;
+            }
+
+            casRetries.increment();
+            if(attempt % SPINS == 0){
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * A consistent copy of the cell, read again for as long as a writer changes it meanwhile.
+     */
+    private StatisticBucket bucketAt(int index) {
+        int cell = index * CELL;
+
+        for(;;){
+            long sequence = cells.get(cell + SEQUENCE);
+            if((sequence & 1) == 0){
+                long count = cells.get(cell + COUNT);
+                if(count == 0 && cells.get(cell + SEQUENCE) == sequence){
+                    return StatisticBucket.EMPTY;
+                }
+
+                StatisticBucket bucket = new StatisticBucket(cells.get(cell + TIME_SLOT), cells.get(cell + SUM), count,
+                        cells.get(cell + MAX), cells.get(cell + MIN), sketches.get(index));
+                if(cells.get(cell + SEQUENCE) == sequence){
+                    return bucket;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    private void write(int cell, long timeSlot, long sum, long count, long max, long min) {
+        cells.lazySet(cell + TIME_SLOT, timeSlot);
+        cells.lazySet(cell + SUM, sum);
+        cells.lazySet(cell + COUNT, count);
+        cells.lazySet(cell + MAX, max);
+        cells.lazySet(cell + MIN, min);
+    }
+
+    private void empty(int index) {
+        write(index * CELL, Long.MIN_VALUE, 0, 0, Long.MIN_VALUE, Long.MAX_VALUE);
+        sketches.lazySet(index, null);
+    }
+
+    /**
+     * Merges every bucket of the window ending at the given second. Each cell is copied once as a whole,
+     * so the result never mixes half-applied transactions even while writers keep updating the cells.
+     * Percentiles are estimated from the merged sketches of the buckets, within the error bound of
+     * {@link QuantileSketch} and never beyond the minimum and maximum.
+     */
+    Statistic statistic(long epochSecond, StatisticWindow window) {
+        long toTimeSlot = Math.floorDiv(epochSecond, (long) resolutionSeconds);
+        long fromTimeSlot = toTimeSlot - (window.getSeconds() + resolutionSeconds - 1) / resolutionSeconds;
+
+        long sum = 0;
+        long count = 0;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+        QuantileSketch sketch = new QuantileSketch();
+
+        for(int i = 0; i < sketches.length(); i++){
+            StatisticBucket bucket = bucketAt(i);
+
+            if(bucket.isWithin(fromTimeSlot, toTimeSlot)){
+                sum = Math.addExact(sum, bucket.getSum());
+                count += bucket.getCount();
+                max = Math.max(max, bucket.getMax());
+                min = Math.min(min, bucket.getMin());
+                sketch.merge(bucket.getSketch());
+            }
+        }
+
+        Statistic.StatisticBuilder builder = new Statistic.StatisticBuilder()
+                .sum(sum)
+                .avg(sum, count)
+                .max(count > 0 ? max : 0)
+                .min(count > 0 ? min : 0)
+                .count(count);
+
+        if(count > 0){
+            builder.p50(estimate(sketch, 0.50, min, max))
+                    .p95(estimate(sketch, 0.95, min, max))
+                    .p99(estimate(sketch, 0.99, min, max));
+        }
+
+        return builder.build();
+    }
+
+    void clear() {
+        for(int i = 0; i < sketches.length(); i++){
+            int cell = i * CELL;
+            long sequence = acquire(cell);
+
+            empty(i);
+            cells.set(cell + SEQUENCE, sequence + 1);
+        }
+    }
+
+    private static long estimate(QuantileSketch sketch, double quantile, long min, long max) {
+        return Math.min(max, Math.max(min, sketch.quantile(quantile)));
+    }
+
+    private int indexOf(long timeSlot, int stripe) {
+        return (stripe & (stripes - 1)) * SLOTS + (int) Math.floorMod(timeSlot, (long) SLOTS);
+    }
+
+}
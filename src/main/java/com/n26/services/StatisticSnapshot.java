@@ -0,0 +1,54 @@
+package com.n26.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.n26.entities.Statistic;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Immutable {@link Statistic} of the window together with its JSON serialization and a strong ETag
+ * derived from it, so it can be served as many times as it is read without being rebuilt.
+ */
+public final class StatisticSnapshot {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(Statistic.class);
+
+    private final Statistic statistic;
+    private final byte[] json;
+    private final String etag;
+    private final long epochSecond;
+
+    public StatisticSnapshot(Statistic statistic, long epochSecond) {
+        this.statistic = statistic;
+        this.epochSecond = epochSecond;
+
+        try {
+            this.json = WRITER.writeValueAsBytes(statistic);
+        } catch(JsonProcessingException e) {
+            throw new IllegalStateException("Statistic could not be serialized", e);
+        }
+
+        this.etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+    }
+
+    public Statistic getStatistic() {
+        return statistic;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * The epoch second whose window the statistic covers.
+     */
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.n26.services;
+
+import com.n26.exceptions.UnsupportedWindowException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Length of time over which statistics are computed, written as a number of seconds, minutes or hours
+ * such as {@code 10s}, {@code 5m} or {@code 1h}. Windows of the same length are equal however they
+ * are written.
+ */
+public final class StatisticWindow {
+
+    public static final StatisticWindow DEFAULT = new StatisticWindow(60, "60s");
+
+    private static final Pattern FORMAT = Pattern.compile("(\\d{1,6})([smh])");
+
+    private final int seconds;
+    private final String label;
+
+    private StatisticWindow(int seconds, String label) {
+        this.seconds = seconds;
+        this.label = label;
+    }
+
+    /**
+     * @throws UnsupportedWindowException if the label is not a positive number followed by s, m or h
+     */
+    public static StatisticWindow parse(String label) {
+        Matcher matcher = FORMAT.matcher(label);
+        if(!matcher.matches()){
+            throw new UnsupportedWindowException();
+        }
+
+        int amount = Integer.parseInt(matcher.group(1));
+        int unit = matcher.group(2).equals("h") ? 3600 : matcher.group(2).equals("m") ? 60 : 1;
+        if(amount == 0 || amount > Integer.MAX_VALUE / unit){
+            throw new UnsupportedWindowException();
+        }
+
+        return new StatisticWindow(amount * unit, label);
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof StatisticWindow && ((StatisticWindow) other).seconds == seconds;
+    }
+
+    @Override
+    public int hashCode() {
+        return seconds;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+}
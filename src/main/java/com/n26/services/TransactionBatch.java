@@ -0,0 +1,147 @@
+package com.n26.services;
+
+import com.n26.entities.BatchResult;
+import com.n26.entities.TransactionOutcome;
+import com.n26.exceptions.AmountOutOfRangeException;
+
+import static com.n26.services.TransactionService.WINDOW_SECONDS;
+
+/**
+ * Single-threaded accumulator for a stream of transactions given as primitives. Accepted amounts are
+ * folded into a private ring of primitive slots and merged into the shared buckets every
+ * {@link #FLUSH_SIZE} transactions, once {@link #FLUSH_INTERVAL_MILLIS} passed since the last merge and on
+ * {@link #complete()}, so adding a transaction allocates nothing. A slow stream therefore shows in the
+ * global statistic within a second, as it does right away in the keyed statistics and the transaction
+ * log. Each transaction is validated against a fresh reading of the clock.
+ */
+public class TransactionBatch {
+
+    private static final int FLUSH_SIZE = 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
+    private final TransactionService transactionService;
+    private final BatchResult result = new BatchResult();
+    private final BatchResult counted = new BatchResult();
+
+    private final long[] seconds = new long[WINDOW_SECONDS];
+    private final long[] sums = new long[WINDOW_SECONDS];
+    private final long[] counts = new long[WINDOW_SECONDS];
+    private final long[] maxs = new long[WINDOW_SECONDS];
+    private final long[] mins = new long[WINDOW_SECONDS];
+    private final QuantileSketch[] sketches = new QuantileSketch[WINDOW_SECONDS];
+
+    private long flushedAt;
+    private int pending;
+    private long lastSequence;
+
+    TransactionBatch(TransactionService transactionService) {
+        this.transactionService = transactionService;
+        this.flushedAt = transactionService.currentTimeMillis();
+    }
+
+    public TransactionOutcome add(long timestamp, long amountInCents) {
+        return add(timestamp, amountInCents, null);
+    }
+
+    /**
+     * Transactions with a key are also aggregated under it right away, since keyed statistics are not
+     * batched.
+     */
+    public TransactionOutcome add(long timestamp, long amountInCents, String key) {
+        long now = transactionService.currentTimeMillis();
+        TransactionOutcome outcome = transactionService.outcomeOf(timestamp, now);
+
+        if(outcome == TransactionOutcome.ACCEPTED){
+            fold(Math.floorDiv(timestamp, 1000L), amountInCents);
+            if(key != null){
+                transactionService.aggregate(key, Math.floorDiv(timestamp, 1000L), amountInCents);
+            }
+            lastSequence = transactionService.log(timestamp, amountInCents);
+        }
+
+        result.add(outcome);
+
+        if(++pending == FLUSH_SIZE || now - flushedAt >= FLUSH_INTERVAL_MILLIS){
+            flush();
+        }
+
+        return outcome;
+    }
+
+    /**
+     * Merges what is left and, if the transaction log promises durability, waits until every accepted
+     * transaction of the batch is durable.
+     */
+    public BatchResult complete() {
+        flush();
+        transactionService.sync(lastSequence);
+        return result;
+    }
+
+    /**
+     * Completes the batch before the error interrupting it is thrown, so the transactions added until
+     * then are merged and counted like those already in the keyed statistics and the transaction log. An
+     * error completing the batch is added to the suppressed ones of the interrupting error.
+     */
+    public void completeAfter(Exception error) {
+        try {
+            complete();
+        } catch(RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    private void fold(long epochSecond, long amountInCents) {
+        int slot = (int) Math.floorMod(epochSecond, (long) WINDOW_SECONDS);
+
+        if(counts[slot] == 0 || seconds[slot] < epochSecond){
+            seconds[slot] = epochSecond;
+            sums[slot] = amountInCents;
+            counts[slot] = 1;
+            maxs[slot] = amountInCents;
+            mins[slot] = amountInCents;
+            sketchOf(slot).clear();
+            sketches[slot].record(amountInCents);
+        } else if(seconds[slot] == epochSecond){
+            try {
+                sums[slot] = Math.addExact(sums[slot], amountInCents);
+            } catch(ArithmeticException e) {
+                throw new AmountOutOfRangeException();
+            }
+            counts[slot]++;
+            maxs[slot] = Math.max(maxs[slot], amountInCents);
+            mins[slot] = Math.min(mins[slot], amountInCents);
+            sketches[slot].record(amountInCents);
+        }
+    }
+
+    /**
+     * Sketches are kept across flushes and cleared when their slot starts a new second, so a batch
+     * allocates at most one per slot.
+     */
+    private QuantileSketch sketchOf(int slot) {
+        if(sketches[slot] == null){
+            sketches[slot] = new QuantileSketch();
+        }
+        return sketches[slot];
+    }
+
+    private void flush() {
+        for(int slot = 0; slot < WINDOW_SECONDS; slot++){
+            if(counts[slot] > 0){
+                transactionService.merge(new StatisticBucket(seconds[slot], sums[slot], counts[slot], maxs[slot], mins[slot], sketches[slot]));
+                counts[slot] = 0;
+            }
+        }
+
+        transactionService.countOutcomes(result.getAccepted() - counted.getAccepted(), result.getTooOld() - counted.getTooOld(),
+                result.getFuture() - counted.getFuture());
+        counted.setAccepted(result.getAccepted());
+        counted.setTooOld(result.getTooOld());
+        counted.setFuture(result.getFuture());
+
+        pending = 0;
+        flushedAt = transactionService.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.n26.services;
+
+import com.n26.entities.TransactionOutcome;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meters of a {@link TransactionService}. The hot paths only increment striped {@link LongAdder}s, which
+ * registries read through function counters when they are scraped, so ingestion pays the same whether
+ * or not a registry is bound. Statistics are only timed once one is.
+ */
+final class TransactionMetrics implements MeterBinder {
+
+    private final TransactionService transactionService;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder tooOld = new LongAdder();
+    private final LongAdder future = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder evictedBuckets = new LongAdder();
+
+    private volatile Timer statisticsTimer;
+
+    TransactionMetrics(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("transactions.received", accepted, LongAdder::sum)
+                .description("Transactions received")
+                .tag("outcome", "accepted")
+                .register(registry);
+        FunctionCounter.builder("transactions.received", tooOld, LongAdder::sum)
+                .description("Transactions received")
+                .tag("outcome", "too_old")
+                .register(registry);
+        FunctionCounter.builder("transactions.received", future, LongAdder::sum)
+                .description("Transactions received")
+                .tag("outcome", "future")
+                .register(registry);
+        FunctionCounter.builder("statistics.buckets.cas.retries", casRetries, LongAdder::sum)
+                .description("Compare-and-sets taking a bucket retried because another writer held it")
+                .register(registry);
+        FunctionCounter.builder("statistics.buckets.evicted", evictedBuckets, LongAdder::sum)
+                .description("Buckets emptied after their slot left the ring")
+                .register(registry);
+
+        for(StatisticWindow window : transactionService.getWindows()){
+            Gauge.builder("statistics.window.population", transactionService, service -> service.getStatisticSnapshot(window).getStatistic().getCount())
+                    .description("Transactions in the window as of the last published statistic")
+                    .tag("window", window.getLabel())
+                    .register(registry);
+        }
+        Gauge.builder("statistics.buckets", transactionService, TransactionService::nonEmptyBucketCount)
+                .description("Buckets holding transactions, over every level")
+                .register(registry);
+        Gauge.builder("statistics.keys", transactionService, TransactionService::trackedKeyCount)
+                .description("Transaction keys tracked")
+                .register(registry);
+        FunctionCounter.builder("statistics.keys.evictions", transactionService, TransactionService::keyEvictionCount)
+                .description("Tracked keys replaced by a new key once the capacity was reached")
+                .register(registry);
+
+        statisticsTimer = Timer.builder("statistics.compute")
+                .description("Time taken to compute the statistic of a window")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    void count(TransactionOutcome outcome) {
+        switch(outcome){
+            case ACCEPTED:
+                accepted.increment();
+                break;
+            case TOO_OLD:
+                tooOld.increment();
+                break;
+            case FUTURE:
+                future.increment();
+                break;
+        }
+    }
+
+    void count(long accepted, long tooOld, long future) {
+        this.accepted.add(accepted);
+        this.tooOld.add(tooOld);
+        this.future.add(future);
+    }
+
+    void recordStatistics(long nanos) {
+        Timer timer = statisticsTimer;
+        if(timer != null){
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    LongAdder getCasRetries() {
+        return casRetries;
+    }
+
+    LongAdder getEvictedBuckets() {
+        return evictedBuckets;
+    }
+
+}
@@ -1,75 +1,635 @@
 package com.n26.services;
 
+import com.n26.entities.BatchResult;
+import com.n26.entities.KeyStatistic;
 import com.n26.entities.Statistic;
 import com.n26.entities.Transaction;
-import com.n26.exceptions.FutureTransactionException;
-import com.n26.exceptions.OldMessageException;
+import com.n26.entities.TransactionOutcome;
+import com.n26.exceptions.AmountOutOfRangeException;
+import com.n26.exceptions.UnsupportedRankingException;
+import com.n26.exceptions.UnsupportedWindowException;
+import com.n26.persistence.SnapshotStore;
+import com.n26.persistence.TransactionLog;
+import com.n26.time.CoarseClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.math.BigDecimal;
-import java.time.Duration;
-import java.time.Instant;
-import java.time.ZoneOffset;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.function.Supplier;
-import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Component
-public class TransactionService {
+public class TransactionService implements MeterBinder {
 
-    private List<Transaction> transactionsList;
+    static final int WINDOW_SECONDS = 60;
 
+    private static final String DEFAULT_WINDOWS = "1s,10s,60s,5m,1h";
+
+    private static final int DEFAULT_KEY_CAPACITY = 1024;
+
+    private static final int STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+    private static final int SNAPSHOT_MAGIC = 0x4E323653;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Clock clock;
+
+    /**
+     * The supported windows, and for each of them the index of the level serving it in {@link #levels}.
+     */
+    private final StatisticWindow[] windows;
+    private final int[] windowLevels;
+
+    /**
+     * One {@link StatisticLevel} per distinct resolution needed by the windows, finest first. Every
+     * accepted transaction is folded into all of them, so a single ingestion stream serves every window.
+     */
+    private StatisticLevel[] levels;
+
+    /**
+     * The last published snapshot of each window, in the order of {@link #windows}.
+     */
+    private volatile StatisticSnapshot[] statisticSnapshots;
+
+    /**
+     * The {@link StatisticLevel#version() version} and time slot of its level each snapshot was computed
+     * at, in the order of {@link #windows}. Only accessed while refreshing.
+     */
+    private final long[] snapshotVersions;
+    private final long[] snapshotTimeSlots;
+
+    private TransactionLog transactionLog = TransactionLog.NONE;
+
+    private SnapshotStore snapshotStore;
+
+    /**
+     * Keeps a snapshot captured before {@link #deleteTransactions()} from replacing the deleted one.
+     */
+    private final Object snapshotLock = new Object();
+
+    private final TransactionMetrics metrics = new TransactionMetrics(this);
+
+    /**
+     * Statistics of the default window per transaction key.
+     */
+    private final KeyedStatistics keyedStatistics;
+
+    private StatisticEvictor evictor;
+
+    public TransactionService() {
+        this(Clock.systemUTC());
+    }
+
+    public TransactionService(Clock clock) {
+        this(clock, DEFAULT_WINDOWS.split(","));
+    }
+
+    public TransactionService(Clock clock, String[] windows) {
+        this(clock, windows, DEFAULT_KEY_CAPACITY);
+    }
+
+    @Autowired
+    public TransactionService(Clock clock, @Value("${statistics.windows:" + DEFAULT_WINDOWS + "}") String[] windows,
+                              @Value("${statistics.keys.capacity:" + DEFAULT_KEY_CAPACITY + "}") int keyCapacity) {
+        this.clock = clock;
+        this.keyedStatistics = new KeyedStatistics(keyCapacity);
+        this.windows = Stream.concat(Stream.of(StatisticWindow.DEFAULT), Arrays.stream(windows).map(String::trim).map(StatisticWindow::parse))
+                .distinct()
+                .sorted(Comparator.comparingInt(StatisticWindow::getSeconds))
+                .toArray(StatisticWindow[]::new);
+
+        int[] resolutions = Arrays.stream(this.windows).mapToInt(StatisticLevel::resolutionFor).distinct().sorted().toArray();
+        this.windowLevels = Arrays.stream(this.windows).mapToInt(window -> Arrays.binarySearch(resolutions, StatisticLevel.resolutionFor(window))).toArray();
+        this.snapshotVersions = new long[this.windows.length];
+        this.snapshotTimeSlots = new long[this.windows.length];
+    }
+
+    @Autowired(required = false)
+    public void setTransactionLog(TransactionLog transactionLog) {
+        this.transactionLog = transactionLog;
+    }
+
+    @Autowired(required = false)
+    public void setSnapshotStore(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Rebuilds the windows from the transaction log, reading only the transactions recent enough for the
+     * longest window. Without a log, the buckets of the last snapshot are loaded instead, less the slots
+     * which expired since; the log already restores every transaction, so it takes precedence.
+     */
     @PostConstruct
     public void init(){
-        transactionsList = new ArrayList<>();
+        levels = newLevels(STRIPES);
+        evictor = new StatisticEvictor(levels, keyedStatistics, metrics.getEvictedBuckets());
+
+        if(transactionLog != TransactionLog.NONE){
+            transactionLog.replay(currentTimeMillis() - retentionMillis(), this::restore);
+        } else if(snapshotStore != null){
+            snapshotStore.load(input -> readSnapshot(input, levels, currentTimeMillis()));
+        }
+
+        refreshStatistics(true);
+    }
+
+    /**
+     * Aggregates the transaction if it is within the window, and reports whether it was accepted or why
+     * it was not, without throwing on the rejections that make up a large share of the traffic.
+     */
+    public TransactionOutcome addTransaction(Transaction transaction) {
+        TransactionOutcome outcome = outcomeOf(transaction.getTimestamp(), currentTimeMillis());
+
+        if(outcome == TransactionOutcome.ACCEPTED){
+            aggregate(transaction);
+            if(transaction.getKey() != null){
+                aggregate(transaction.getKey(), Math.floorDiv(transaction.getTimestamp(), 1000L), transaction.getAmountInCents());
+            }
+            transactionLog.sync(transactionLog.append(transaction.getTimestamp(), transaction.getAmountInCents()));
+        }
+
+        metrics.count(outcome);
+        return outcome;
+    }
+
+    /**
+     * Validates every transaction against the clock and folds the accepted ones into a
+     * {@link TransactionBatch}, so the shared buckets see at most one compare-and-set per second of the
+     * window and level however large the batch is.
+     */
+    public BatchResult addTransactions(List<Transaction> transactions) {
+        TransactionBatch batch = newBatch();
+
+        try {
+            for(Transaction transaction : transactions){
+                batch.add(transaction.getTimestamp(), transaction.getAmountInCents(), transaction.getKey());
+            }
+        } catch(RuntimeException e) {
+            batch.completeAfter(e);
+            throw e;
+        }
+
+        return batch.complete();
     }
 
-    public void addTransaction(Transaction transaction) {
-        validateTimestamp(transaction);
-        transactionsList.add(transaction);
+    public TransactionBatch newBatch() {
+        return new TransactionBatch(this);
+    }
+
+    void aggregate(Transaction transaction) {
+        fold(Math.floorDiv(transaction.getTimestamp(), 1000L), transaction.getAmountInCents());
+    }
+
+    /**
+     * Aggregates the transaction under its key, once it was counted in the global statistics. Should the
+     * sum of the key's second overflow, the transaction is only left out of the keyed statistics, so it
+     * is still logged like every other transaction counted.
+     */
+    void aggregate(String key, long epochSecond, long amountInCents) {
+        try {
+            keyedStatistics.add(key, epochSecond, amountInCents);
+        } catch(ArithmeticException e) {
+            // the keyed statistics of that second already hold the largest sum they can
+        }
+    }
+
+    /**
+     * Aggregates a transaction read back from the log, which was validated when it was first received.
+     */
+    private void restore(long timestamp, long amountInCents) {
+        try {
+            fold(Math.floorDiv(timestamp, 1000L), amountInCents);
+        } catch(AmountOutOfRangeException e) {
+            // rejected as well when it was first received, after being logged by its batch
+        }
+    }
+
+    private void fold(long epochSecond, long amountInCents) {
+        int stripe = stripe();
+
+        try {
+            for(StatisticLevel level : levels){
+                level.add(epochSecond, amountInCents, stripe);
+            }
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
+    }
+
+    /**
+     * Merges the aggregate of one second into every level.
+     */
+    void merge(StatisticBucket secondBucket) {
+        int stripe = stripe();
+
+        try {
+            for(StatisticLevel level : levels){
+                level.merge(secondBucket, stripe);
+            }
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
     }
 
     public Statistic runStatistics() {
-        Supplier<DoubleStream> amountSupplier = () -> transactionsList.stream()
-                                                                  .filter(i -> Math.abs(Duration.between(Instant.now(), i.getTimestamp().atZone(ZoneOffset.UTC).toInstant()).getSeconds()) < 60)
-                                                                  .map(Transaction::getAmount)
-                                                                  .mapToDouble(BigDecimal::doubleValue);
+        return runStatistics(StatisticWindow.DEFAULT);
+    }
 
-        return new Statistic.StatisticBuilder()
-                .sum(amountSupplier.get().sum())
-                .avg(amountSupplier.get().average())
-                .max(amountSupplier.get().max())
-                .min(amountSupplier.get().min())
-                .count(amountSupplier.get().count())
-                .build();
+    /**
+     * @throws UnsupportedWindowException if the window is not one of the configured windows
+     */
+    public Statistic runStatistics(StatisticWindow window) {
+        return runStatistics(indexOf(window), currentEpochSecond());
+    }
+
+    private Statistic runStatistics(int window, long now) {
+        long start = System.nanoTime();
+        Statistic statistic = levels[windowLevels[window]].statistic(now, windows[window]);
+
+        metrics.recordStatistics(System.nanoTime() - start);
+        return statistic;
+    }
+
+    /**
+     * The statistic of the default window for the transactions of the key, empty if the key is not among
+     * the tracked ones.
+     */
+    public Statistic runStatistics(String key) {
+        try {
+            return keyedStatistics.statistic(key, currentEpochSecond());
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
+    }
+
+    /**
+     * The statistics of the default window of at most {@code limit} keys, largest first by the ranking.
+     *
+     * @throws UnsupportedRankingException if the limit is not positive
+     */
+    public List<KeyStatistic> topStatistics(KeyRanking ranking, int limit) {
+        if(limit < 1){
+            throw new UnsupportedRankingException();
+        }
+
+        try {
+            return keyedStatistics.top(ranking, limit, currentEpochSecond());
+        } catch(ArithmeticException e) {
+            throw new AmountOutOfRangeException();
+        }
+    }
+
+    /**
+     * The non-empty buckets of every level, in the format of the snapshots, for an aggregator to merge
+     * with those of the other nodes.
+     */
+    public byte[] exportPartial() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            writeSnapshot(new DataOutputStream(bytes));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a partial exported by {@link #exportPartial()} whole, so that a truncated or malformed one can
+     * be left out before any of its buckets is merged.
+     *
+     * @return the buckets per level, or {@code null} if the partial is of another format or was captured
+     *         before the longest window began
+     * @throws IOException if the partial is truncated
+     * @throws RuntimeException if the partial is otherwise malformed
+     */
+    StatisticBucket[][] readPartial(byte[] partial) throws IOException {
+        return readBuckets(new DataInputStream(new ByteArrayInputStream(partial)), currentTimeMillis());
+    }
+
+    /**
+     * The buckets of this node, as {@link #readPartial(byte[])} would read them from its partial.
+     */
+    StatisticBucket[][] localPartial() {
+        return Arrays.stream(levels).map(StatisticLevel::nonEmptyBuckets).toArray(StatisticBucket[][]::new);
+    }
+
+    /**
+     * Merges the partial aggregates of several nodes bucket by bucket into levels of their own, and
+     * computes the statistic of the window over them. The buckets which expired since are ignored.
+     *
+     * @throws UnsupportedWindowException if the window is not one of the configured windows
+     */
+    Statistic mergeStatistics(StatisticWindow window, List<StatisticBucket[][]> partials) {
+        int index = indexOf(window);
+        StatisticLevel[] merged = newLevels(1);
+        long now = currentTimeMillis();
+
+        for(StatisticBucket[][] partial : partials){
+            restore(merged, partial, now);
+        }
+
+        return merged[windowLevels[index]].statistic(Math.floorDiv(now, 1000L), windows[index]);
     }
 
     public void deleteTransactions() {
-        transactionsList.clear();
+        for(StatisticLevel level : levels){
+            level.clear();
+        }
+        keyedStatistics.clear();
+        transactionLog.truncate();
+        if(snapshotStore != null){
+            synchronized(snapshotLock) {
+                snapshotStore.delete();
+            }
+        }
+
+        refreshStatistics(true);
+    }
+
+    /**
+     * Binds the ingestion and statistics meters of {@link TransactionMetrics}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.bindTo(registry);
     }
 
-    private void validateTimestamp(Transaction transaction) {
-        if(isBeforeMinimumTimestamp(transaction)){
-            throw new OldMessageException();
+    StatisticWindow[] getWindows() {
+        return windows.clone();
+    }
+
+    int trackedKeyCount() {
+        return keyedStatistics.size();
+    }
+
+    long keyEvictionCount() {
+        return keyedStatistics.evictions();
+    }
+
+    int nonEmptyBucketCount() {
+        int count = 0;
+        for(StatisticLevel level : levels){
+            count += level.nonEmptyBucketCount();
         }
+        return count;
+    }
+
+    /**
+     * The last published statistic of the default window, at most one refresh interval behind the buckets.
+     */
+    public StatisticSnapshot getStatisticSnapshot() {
+        return getStatisticSnapshot(StatisticWindow.DEFAULT);
+    }
+
+    /**
+     * The last published statistic of the window, at most one refresh interval behind the buckets.
+     *
+     * @throws UnsupportedWindowException if the window is not one of the configured windows
+     */
+    public StatisticSnapshot getStatisticSnapshot(StatisticWindow window) {
+        return statisticSnapshots[indexOf(window)];
+    }
+
+    /**
+     * Republishes the snapshot of a window when its level was updated since the snapshot was computed, or
+     * when the window moved on by a slot of its level and may have lost expired buckets; otherwise the
+     * snapshot and its serialized form are kept as they are. Before that, once a second, the
+     * {@link StatisticEvictor} reclaims what expired.
+     */
+    @Scheduled(fixedDelayString = "${statistics.refresh-interval-ms:10}")
+    public void refreshStatistics() {
+        refreshStatistics(false);
+    }
+
+    /**
+     * Drops the parts of the transaction log that fell out of the longest window.
+     */
+    @Scheduled(fixedDelayString = "${persistence.wal.expiry-interval-ms:1000}")
+    public void expireTransactionLog() {
+        transactionLog.expire(currentTimeMillis() - retentionMillis());
+    }
 
-        if(isAfterMaximumTimestamp(transaction)){
-            throw new FutureTransactionException();
+    /**
+     * Writes the non-empty buckets of every level to the snapshot store, together with the time they
+     * were captured at.
+     */
+    @Scheduled(fixedDelayString = "${persistence.snapshot.interval-ms:1000}")
+    public void saveSnapshot() {
+        if(snapshotStore != null){
+            synchronized(snapshotLock) {
+                snapshotStore.save(this::writeSnapshot);
+            }
         }
     }
 
-    private boolean isAfterMaximumTimestamp(Transaction transaction) {
-        return transaction.getTimestamp().atZone(ZoneOffset.UTC).toInstant().toEpochMilli() > Instant.now().toEpochMilli();
+    private void writeSnapshot(DataOutput output) throws IOException {
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeInt(SNAPSHOT_VERSION);
+        output.writeLong(currentTimeMillis());
+        output.writeInt(levels.length);
+
+        for(StatisticLevel level : levels){
+            StatisticBucket[] buckets = level.nonEmptyBuckets();
+
+            output.writeInt(level.getResolutionSeconds());
+            output.writeInt(buckets.length);
+            for(StatisticBucket bucket : buckets){
+                bucket.writeTo(output);
+            }
+        }
+    }
+
+    private void readSnapshot(DataInput input, StatisticLevel[] levels, long now) throws IOException {
+        StatisticBucket[][] buckets = readBuckets(input, now);
+        if(buckets != null){
+            restore(levels, buckets, now);
+        }
+    }
+
+    /**
+     * Reads every bucket of a snapshot, per level in the order of {@link #levels}. Snapshots of another
+     * format, or captured before the longest window began, are ignored. Levels which are no longer
+     * configured are skipped.
+     */
+    private StatisticBucket[][] readBuckets(DataInput input, long now) throws IOException {
+        if(input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION || input.readLong() < now - retentionMillis()){
+            return null;
+        }
+
+        StatisticBucket[][] buckets = new StatisticBucket[levels.length][0];
+        for(int levelCount = input.readInt(); levelCount > 0; levelCount--){
+            int level = levelOf(input.readInt());
+            List<StatisticBucket> read = new ArrayList<>();
+
+            for(int bucketCount = input.readInt(); bucketCount > 0; bucketCount--){
+                read.add(StatisticBucket.readFrom(input));
+            }
+            if(level >= 0){
+                buckets[level] = read.toArray(new StatisticBucket[0]);
+            }
+        }
+
+        return buckets;
+    }
+
+    private static void restore(StatisticLevel[] levels, StatisticBucket[][] buckets, long now) {
+        for(int level = 0; level < levels.length; level++){
+            for(StatisticBucket bucket : buckets[level]){
+                try {
+                    levels[level].restore(bucket, Math.floorDiv(now, 1000L));
+                } catch(ArithmeticException e) {
+                    throw new AmountOutOfRangeException();
+                }
+            }
+        }
+    }
+
+    private int levelOf(int resolutionSeconds) {
+        for(int level = 0; level < levels.length; level++){
+            if(levels[level].getResolutionSeconds() == resolutionSeconds){
+                return level;
+            }
+        }
+
+        return -1;
+    }
+
+    private synchronized void refreshStatistics(boolean force) {
+        long now = currentEpochSecond();
+        evictor.advance(now);
+
+        StatisticSnapshot[] current = statisticSnapshots;
+        StatisticSnapshot[] snapshots = current == null ? new StatisticSnapshot[windows.length] : null;
+
+        for(int window = 0; window < windows.length; window++){
+            StatisticLevel level = levels[windowLevels[window]];
+            long version = level.version();
+            long timeSlot = level.timeSlotOf(now);
+            boolean windowMoved = current != null && snapshotTimeSlots[window] != timeSlot
+                    && current[window].getStatistic().getCount() > 0;
+
+            if(force || current == null || snapshotVersions[window] != version || windowMoved){
+                if(snapshots == null){
+                    snapshots = current.clone();
+                }
+                snapshots[window] = new StatisticSnapshot(runStatistics(window, now), now);
+                snapshotVersions[window] = version;
+                snapshotTimeSlots[window] = timeSlot;
+            }
+        }
+
+        if(snapshots != null){
+            statisticSnapshots = snapshots;
+        }
+    }
+
+    /**
+     * Records the accepted transaction of a batch in the log.
+     *
+     * @return the sequence number to {@link TransactionLog#sync(long) sync} on before answering
+     */
+    long log(long timestamp, long amountInCents) {
+        return transactionLog.append(timestamp, amountInCents);
+    }
+
+    /**
+     * Whether adding transactions may block until the transaction log made them durable.
+     */
+    public boolean isIngestionBlocking() {
+        return transactionLog.isSynchronous();
+    }
+
+    void sync(long sequence) {
+        transactionLog.sync(sequence);
+    }
+
+    void countOutcomes(long accepted, long tooOld, long future) {
+        metrics.count(accepted, tooOld, future);
+    }
+
+    private long retentionMillis() {
+        return windows[windows.length - 1].getSeconds() * 1000L;
+    }
+
+    private StatisticLevel[] newLevels(int stripes) {
+        return IntStream.of(windowLevels).distinct().sorted()
+                .mapToObj(level -> new StatisticLevel(StatisticLevel.resolutionFor(windows[firstWindowOf(level)]), stripes, metrics.getCasRetries()))
+                .toArray(StatisticLevel[]::new);
+    }
+
+    int indexOf(StatisticWindow window) {
+        for(int i = 0; i < windows.length; i++){
+            if(windows[i].equals(window)){
+                return i;
+            }
+        }
+
+        throw new UnsupportedWindowException();
+    }
+
+    private int firstWindowOf(int level) {
+        for(int i = 0; i < windowLevels.length; i++){
+            if(windowLevels[i] == level){
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("No window served by level " + level);
+    }
+
+    TransactionOutcome outcomeOf(long timestamp, long now) {
+        if(timestamp < now - WINDOW_SECONDS * 1000){
+            return TransactionOutcome.TOO_OLD;
+        }
+
+        if(timestamp > now && timestamp > preciseTimeMillis()){
+            return TransactionOutcome.FUTURE;
+        }
+
+        return TransactionOutcome.ACCEPTED;
+    }
+
+    long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    /**
+     * A coarse clock may lag behind when its ticker thread is starved, so its source is read again before
+     * a transaction is rejected as future.
+     */
+    private long preciseTimeMillis() {
+        return clock instanceof CoarseClock ? ((CoarseClock) clock).preciseMillis() : clock.millis();
+    }
+
+    private long currentEpochSecond() {
+        return Math.floorDiv(clock.millis(), 1000L);
     }
 
-    private boolean isBeforeMinimumTimestamp(Transaction transaction) {
-        return transaction.getTimestamp().atZone(ZoneOffset.UTC).toInstant().toEpochMilli() < Instant.now().toEpochMilli() - 60000;
+    private static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
     }
 
-    public List<Transaction> getTransactionsList() {
-        return transactionsList;
+    private static int stripesFor(int processors) {
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
     }
 
 }
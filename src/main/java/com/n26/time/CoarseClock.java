@@ -0,0 +1,91 @@
+package com.n26.time;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock whose time is sampled from a source clock by a background daemon thread every tick, so that
+ * reading it is a single atomic load instead of a system call. Readings lag the source by at most
+ * one tick and never go backwards.
+ */
+public class CoarseClock extends Clock implements AutoCloseable {
+
+    private final Ticker ticker;
+    private final ZoneId zone;
+
+    public CoarseClock(Clock source, long tickIntervalMillis) {
+        this(new Ticker(source, tickIntervalMillis), source.getZone());
+    }
+
+    private CoarseClock(Ticker ticker, ZoneId zone) {
+        this.ticker = ticker;
+        this.zone = zone;
+    }
+
+    @Override
+    public long millis() {
+        return ticker.millis.get();
+    }
+
+    /**
+     * Reads the source clock, bypassing and refreshing the cached reading.
+     */
+    public long preciseMillis() {
+        ticker.run();
+        return ticker.millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(ticker.millis.get());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new CoarseClock(ticker, zone);
+    }
+
+    /**
+     * Stops the background thread; the clock then keeps returning its last reading.
+     */
+    @Override
+    public void close() {
+        ticker.executor.shutdownNow();
+    }
+
+    private static final class Ticker implements Runnable {
+
+        private final Clock source;
+        private final ScheduledExecutorService executor;
+
+        private final AtomicLong millis;
+
+        private Ticker(Clock source, long tickIntervalMillis) {
+            this.source = source;
+            this.millis = new AtomicLong(source.millis());
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleAtFixedRate(this, tickIntervalMillis, tickIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            millis.accumulateAndGet(source.millis(), Math::max);
+        }
+
+    }
+
+}
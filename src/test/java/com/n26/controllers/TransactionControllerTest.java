@@ -1,25 +1,44 @@
 package com.n26.controllers;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.n26.entities.BatchResult;
+import com.n26.entities.KeyStatistic;
 import com.n26.entities.Statistic;
 import com.n26.entities.Transaction;
+import com.n26.entities.TransactionOutcome;
+import com.n26.parsers.TransactionStreamReader;
+import com.n26.services.KeyRanking;
+import com.n26.services.StatisticBroadcaster;
+import com.n26.services.StatisticSnapshot;
+import com.n26.services.StatisticWindow;
 import com.n26.services.TransactionService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+import java.util.Collections;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = TransactionController.class, secure = false)
@@ -31,6 +50,12 @@ public class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private TransactionStreamReader transactionStreamReader;
+
+    @MockBean
+    private StatisticBroadcaster statisticBroadcaster;
+
     @Test
     public void addTransaction_whenInvalidJson_shouldThrowUnprocessableEntity() throws Exception {
         MvcResult result = mockMvc.perform(
@@ -63,7 +88,7 @@ public class TransactionControllerTest {
 
     @Test
     public void addTransaction_whenHappyPath_shouldReturnStatusCreated() throws Exception {
-        doNothing().when(transactionService).addTransaction(isA(Transaction.class));
+        doReturn(TransactionOutcome.ACCEPTED).when(transactionService).addTransaction(isA(Transaction.class));
 
         MvcResult result = mockMvc.perform(
                 MockMvcRequestBuilders.post("/transactions")
@@ -74,6 +99,93 @@ public class TransactionControllerTest {
         assertEquals(201, result.getResponse().getStatus());
     }
 
+    @Test
+    public void addTransaction_whenTransactionIsOld_shouldReturnStatusNoContent() throws Exception {
+        doReturn(TransactionOutcome.TOO_OLD).when(transactionService).addTransaction(isA(Transaction.class));
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}"))
+                .andReturn();
+        assertEquals(204, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void addTransaction_whenTransactionIsInTheFuture_shouldThrowUnprocessableEntity() throws Exception {
+        doReturn(TransactionOutcome.FUTURE).when(transactionService).addTransaction(isA(Transaction.class));
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("{\"amount\":\"3.288\",\"timestamp\":\"2118-08-31T05:52:52.521Z\"}"))
+                .andReturn();
+        assertEquals(422, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void addTransactions_whenHappyPath_shouldReturnOutcomeCounts() throws Exception {
+        BatchResult batchResult = new BatchResult();
+        batchResult.setAccepted(2);
+        batchResult.setTooOld(1);
+        doReturn(batchResult).when(transactionService).addTransactions(anyList());
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions/batch")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("[{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}," +
+                                "{\"amount\":\"10\",\"timestamp\":\"2018-08-31T05:52:53.521Z\"}," +
+                                "{\"amount\":\"1.5\",\"timestamp\":\"2018-08-31T05:52:54.521Z\"}]"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", equalTo("{\"accepted\":2,\"tooOld\":1,\"future\":0}"))
+        ));
+    }
+
+    @Test
+    public void addTransactions_whenInvalidTimestamp_shouldThrowUnprocessableEntity() throws Exception {
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content("[{\"amount\":\"3.288\",\"timestamp\":\"17-10-1988\"}]"))
+                .andReturn();
+        assertEquals(422, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void streamTransactions_whenHappyPath_shouldReturnOutcomeCounts() throws Exception {
+        BatchResult batchResult = new BatchResult();
+        batchResult.setAccepted(1);
+        batchResult.setFuture(1);
+        doReturn(batchResult).when(transactionStreamReader).read(any(InputStream.class), any());
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions/batch")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(TransactionController.APPLICATION_NDJSON_VALUE)
+                        .content("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}\n" +
+                                "{\"amount\":\"10\",\"timestamp\":\"2118-08-31T05:52:53.521Z\"}\n"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", equalTo("{\"accepted\":1,\"tooOld\":0,\"future\":1}"))
+        ));
+    }
+
+    @Test
+    public void streamTransactions_whenMalformedLine_shouldThrowBadRequest() throws Exception {
+        doThrow(new JsonParseException(null, "Unexpected character")).when(transactionStreamReader).read(any(InputStream.class), any());
+
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.post("/transactions/batch")
+                        .contentType(TransactionController.APPLICATION_NDJSON_VALUE)
+                        .content("Test"))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
+    }
+
     @Test
     public void deleteTransactions_whenHappyPath_shouldReturnStatusNoContent() throws Exception {
         doNothing().when(transactionService).deleteTransactions();
@@ -89,7 +201,8 @@ public class TransactionControllerTest {
 
     @Test
     public void getStatistics_whenHappyPath_shouldReturnStatisticEntity() throws Exception {
-        doReturn(new Statistic.StatisticBuilder().build()).when(transactionService).runStatistics();
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot();
 
         MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -98,5 +211,118 @@ public class TransactionControllerTest {
                 hasProperty("status", equalTo(200)),
                 hasProperty("contentAsString", equalTo("{\"sum\":\"0\",\"avg\":\"0\",\"max\":\"0\",\"min\":\"0\",\"count\":0}"))
         ));
+        assertEquals(snapshot.getEtag(), result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void getStatistics_whenEtagMatches_shouldReturnNotModified() throws Exception {
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().count(1).build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot();
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
+                .header(HttpHeaders.IF_NONE_MATCH, snapshot.getEtag()))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(304)),
+                hasProperty("contentAsString", equalTo(""))
+        ));
+    }
+
+    @Test
+    public void getStatistics_whenWindowIsGiven_shouldReturnStatisticOfThatWindow() throws Exception {
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().count(3).build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot(StatisticWindow.parse("5m"));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
+                .param("window", "5m"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", containsString("\"count\":3"))
+        ));
+    }
+
+    @Test
+    public void streamStatistics_whenHappyPath_shouldPushStatisticsAsServerSentEvents() throws Exception {
+        ServerSentEvent<String> event = ServerSentEvent.builder("{\"count\":0}").id("\"etag\"").event("statistic").build();
+        doReturn(Flux.just(event)).when(statisticBroadcaster).subscribe(StatisticWindow.DEFAULT, true);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/stream")
+                .param("onlyChanges", "true")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        assertThat(result.getResponse().getContentAsString(), allOf(
+                containsString("id:\"etag\""),
+                containsString("event:statistic"),
+                containsString("data:{\"count\":0}")
+        ));
+    }
+
+    @Test
+    public void getKeyStatistics_whenHappyPath_shouldReturnStatisticOfTheKey() throws Exception {
+        doReturn(new Statistic.StatisticBuilder().sum(1200).count(2).build()).when(transactionService).runStatistics("merchant-1");
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/keys/merchant-1"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", containsString("\"sum\":\"12.00\""))
+        ));
+    }
+
+    @Test
+    public void getKeyStatistics_whenKeyIsNamedAfterAnEndpoint_shouldReturnStatisticOfTheKey() throws Exception {
+        doReturn(new Statistic.StatisticBuilder().sum(300).count(1).build()).when(transactionService).runStatistics("top");
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/keys/top"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", containsString("\"sum\":\"3.00\""))
+        ));
+    }
+
+    @Test
+    public void getTopStatistics_whenHappyPath_shouldReturnKeysWithTheirStatistics() throws Exception {
+        doReturn(Collections.singletonList(new KeyStatistic("merchant-1", new Statistic.StatisticBuilder().count(3).build())))
+                .when(transactionService).topStatistics(KeyRanking.COUNT, 5);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/top")
+                .param("by", "count")
+                .param("k", "5"))
+                .andReturn();
+        assertThat(result.getResponse(), allOf(
+                hasProperty("status", equalTo(200)),
+                hasProperty("contentAsString", startsWith("[{\"key\":\"merchant-1\",\"sum\":\"0\""))
+        ));
+    }
+
+    @Test
+    public void getTopStatistics_whenRankingIsUnknown_shouldReturnBadRequest() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/top")
+                .param("by", "median"))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void getPartialStatistics_whenHappyPath_shouldReturnBucketsOfThisNode() throws Exception {
+        doReturn(new byte[]{1, 2, 3}).when(transactionService).exportPartial();
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/partial"))
+                .andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, result.getResponse().getContentType());
+        assertArrayEquals(new byte[]{1, 2, 3}, result.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    public void getStatistics_whenWindowIsMalformed_shouldReturnBadRequest() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
+                .param("window", "5 minutes"))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
     }
-}
\ No newline at end of file
+}
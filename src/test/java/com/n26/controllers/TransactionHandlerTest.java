@@ -0,0 +1,236 @@
+package com.n26.controllers;
+
+import com.n26.entities.BatchResult;
+import com.n26.entities.Statistic;
+import com.n26.entities.Transaction;
+import com.n26.entities.TransactionOutcome;
+import com.n26.parsers.TransactionFeed;
+import com.n26.parsers.TransactionStreamReader;
+import com.n26.services.StatisticSnapshot;
+import com.n26.services.StatisticWindow;
+import com.n26.services.TransactionService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ActiveProfiles("reactive")
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class TransactionHandlerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private TransactionService transactionService;
+
+    @MockBean
+    private TransactionStreamReader transactionStreamReader;
+
+    @Test
+    public void addTransaction_whenInvalidJson_shouldThrowUnprocessableEntity() {
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"test\": \"test\"}")
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    public void addTransaction_whenInvalidData_shouldThrowBadRequest() {
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("Test")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void addTransaction_whenInvalidTimestamp_shouldThrowUnprocessableEntity() {
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"17-10-1988\"}")
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    public void addTransaction_whenHappyPath_shouldReturnStatusCreated() {
+        doReturn(TransactionOutcome.ACCEPTED).when(transactionService).addTransaction(isA(Transaction.class));
+
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}")
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    public void addTransaction_whenIngestionBlocks_shouldRunOffTheEventLoop() {
+        AtomicReference<String> thread = new AtomicReference<>();
+        doReturn(true).when(transactionService).isIngestionBlocking();
+        doAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return TransactionOutcome.ACCEPTED;
+        }).when(transactionService).addTransaction(isA(Transaction.class));
+
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}")
+                .exchange()
+                .expectStatus().isCreated();
+
+        assertThat(thread.get(), startsWith("elastic-"));
+    }
+
+    @Test
+    public void addTransaction_whenTransactionIsOld_shouldReturnNoContent() {
+        doReturn(TransactionOutcome.TOO_OLD).when(transactionService).addTransaction(isA(Transaction.class));
+
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void addTransaction_whenTransactionIsInTheFuture_shouldThrowUnprocessableEntity() {
+        doReturn(TransactionOutcome.FUTURE).when(transactionService).addTransaction(isA(Transaction.class));
+
+        webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"2118-08-31T05:52:52.521Z\"}")
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    public void addTransactions_whenHappyPath_shouldReturnOutcomeCounts() {
+        BatchResult batchResult = new BatchResult();
+        batchResult.setAccepted(2);
+        batchResult.setTooOld(1);
+        doReturn(batchResult).when(transactionService).addTransactions(anyList());
+
+        webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("[{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}," +
+                        "{\"amount\":\"10\",\"timestamp\":\"2018-08-31T05:52:53.521Z\"}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"accepted\":2,\"tooOld\":1,\"future\":0}");
+    }
+
+    @Test
+    public void streamTransactions_whenHappyPath_shouldReturnOutcomeCounts() throws Exception {
+        BatchResult batchResult = new BatchResult();
+        batchResult.setAccepted(1);
+        batchResult.setFuture(1);
+        TransactionFeed feed = mock(TransactionFeed.class);
+        doReturn(batchResult).when(feed).complete();
+        doReturn(feed).when(transactionStreamReader).feed(any());
+
+        webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.parseMediaType(TransactionController.APPLICATION_NDJSON_VALUE))
+                .syncBody("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"accepted\":1,\"tooOld\":0,\"future\":1}");
+    }
+
+    @Test
+    public void deleteTransactions_whenHappyPath_shouldReturnStatusNoContent() {
+        doNothing().when(transactionService).deleteTransactions();
+
+        webTestClient.delete().uri("/transactions")
+                .exchange()
+                .expectStatus().isNoContent();
+        verify(transactionService).deleteTransactions();
+    }
+
+    @Test
+    public void getStatistics_whenHappyPath_shouldReturnStatisticEntity() {
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot();
+
+        webTestClient.get().uri("/statistics")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, snapshot.getEtag())
+                .expectBody(String.class).isEqualTo("{\"sum\":\"0\",\"avg\":\"0\",\"max\":\"0\",\"min\":\"0\",\"count\":0}");
+    }
+
+    @Test
+    public void getStatistics_whenEtagMatches_shouldReturnNotModified() {
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().count(1).build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot(StatisticWindow.parse("5m"));
+
+        webTestClient.get().uri("/statistics?window=5m")
+                .header(HttpHeaders.IF_NONE_MATCH, snapshot.getEtag())
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    public void streamStatistics_whenHappyPath_shouldPushStatisticsAsServerSentEvents() {
+        StatisticSnapshot snapshot = new StatisticSnapshot(new Statistic.StatisticBuilder().count(2).build(), 0L);
+        doReturn(snapshot).when(transactionService).getStatisticSnapshot(StatisticWindow.DEFAULT);
+
+        String data = webTestClient.get().uri("/statistics/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertThat(data, containsString("\"count\":2"));
+    }
+
+    @Test
+    public void getKeyStatistics_whenHappyPath_shouldReturnStatisticOfTheKey() {
+        doReturn(new Statistic.StatisticBuilder().sum(1200).count(2).build()).when(transactionService).runStatistics("merchant-1");
+
+        webTestClient.get().uri("/statistics/keys/merchant-1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.sum").isEqualTo("12.00");
+    }
+
+    @Test
+    public void getTopStatistics_whenLimitIsMalformed_shouldReturnBadRequest() {
+        webTestClient.get().uri("/statistics/top?by=sum&k=many")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getStatistics_whenWindowIsMalformed_shouldReturnBadRequest() {
+        webTestClient.get().uri("/statistics?window=forever")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.n26.parsers;
+
+import com.n26.exceptions.AmountOutOfRangeException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AmountParserTest {
+
+    @Test
+    public void parseCents_whenPlainDecimal_shouldReturnCents(){
+        assertEquals(1221L, parse("12.21"));
+        assertEquals(1200L, parse("12"));
+        assertEquals(1250L, parse("12.5"));
+        assertEquals(-1221L, parse("-12.21"));
+    }
+
+    @Test
+    public void parseCents_whenMoreThanTwoDecimals_shouldRoundHalfUp(){
+        assertEquals(329L, parse("3.288"));
+        assertEquals(328L, parse("3.2849999"));
+        assertEquals(329L, parse("3.285"));
+        assertEquals(-329L, parse("-3.285"));
+    }
+
+    @Test
+    public void parseCents_whenExponentNotation_shouldReturnCents(){
+        assertEquals(10000L, parse("1e2"));
+        assertEquals(123L, parse("1.234E0"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseCents_whenNotANumber_shouldThrowNumberFormatException(){
+        parse("12.a");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseCents_whenEmpty_shouldThrowNumberFormatException(){
+        parse("-");
+    }
+
+    @Test(expected = AmountOutOfRangeException.class)
+    public void parseCents_whenAmountDoesNotFitInCents_shouldThrowAmountOutOfRangeException(){
+        parse("92233720368547758.08");
+    }
+
+    @Test(expected = AmountOutOfRangeException.class)
+    public void parseCents_whenExponentIsHuge_shouldThrowAmountOutOfRangeException(){
+        parse("1e999999999");
+    }
+
+    private static long parse(String amount) {
+        char[] chars = (" " + amount + " ").toCharArray();
+        return AmountParser.parseCents(chars, 1, amount.length());
+    }
+
+}
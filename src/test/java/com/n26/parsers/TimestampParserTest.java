@@ -0,0 +1,55 @@
+package com.n26.parsers;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimestampParserTest {
+
+    @Test
+    public void parseEpochMillis_whenUtc_shouldReturnEpochMillis(){
+        assertEquals(epochMillis("2018-08-31T05:52:52.521Z"), parse("2018-08-31T05:52:52.521Z"));
+        assertEquals(0L, parse("1970-01-01T00:00:00.000Z"));
+        assertEquals(epochMillis("2020-02-29T23:59:59.999Z"), parse("2020-02-29T23:59:59.999Z"));
+        assertEquals(epochMillis("1969-12-31T23:59:59.999Z"), parse("1969-12-31T23:59:59.999Z"));
+    }
+
+    @Test
+    public void parseEpochMillis_whenOffset_shouldIgnoreOffset(){
+        assertEquals(epochMillis("2018-08-31T05:52:52.521Z"), parse("2018-08-31T05:52:52.521+02:00"));
+        assertEquals(epochMillis("2018-08-31T05:52:52.521Z"), parse("2018-08-31T05:52:52.521-03:30"));
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseEpochMillis_whenInvalidOffset_shouldThrowDateTimeParseException(){
+        parse("2018-08-31T05:52:52.521+19:00");
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseEpochMillis_whenOtherLayout_shouldThrowDateTimeParseException(){
+        parse("17-10-1988");
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseEpochMillis_whenInvalidDate_shouldThrowDateTimeParseException(){
+        parse("2018-02-29T05:52:52.521Z");
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseEpochMillis_whenMissingOffset_shouldThrowDateTimeParseException(){
+        parse("2018-08-31T05:52:52.5210");
+    }
+
+    private static long parse(String timestamp) {
+        char[] chars = ("\"" + timestamp + "\"").toCharArray();
+        return TimestampParser.parseEpochMillis(chars, 1, timestamp.length());
+    }
+
+    private static long epochMillis(String timestamp) {
+        return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.Transaction;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TransactionDeserializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void deserialize_whenHappyPath_shouldReadCentsAndEpochMillis() throws IOException {
+        Transaction transaction = read("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}");
+
+        assertThat(transaction, allOf(
+                hasProperty("amountInCents", equalTo(329L)),
+                hasProperty("timestamp", equalTo(Instant.parse("2018-08-31T05:52:52.521Z").toEpochMilli()))
+        ));
+    }
+
+    @Test
+    public void deserialize_whenKeyIsGiven_shouldReadIt() throws IOException {
+        Transaction transaction = read("{\"amount\":\"3.288\",\"timestamp\":\"2018-08-31T05:52:52.521Z\",\"key\":\"merchant-1\"}");
+
+        assertThat(transaction.getKey(), equalTo("merchant-1"));
+        assertThat(read("{\"amount\":1,\"timestamp\":\"2018-08-31T05:52:52.521Z\",\"key\":null}").getKey(), nullValue());
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void deserialize_whenKeyIsTooLong_shouldThrowInvalidFormatException() throws IOException {
+        read("{\"amount\":1,\"timestamp\":\"2018-08-31T05:52:52.521Z\",\"key\":\"" + String.join("", Collections.nCopies(129, "k")) + "\"}");
+    }
+
+    @Test
+    public void deserialize_whenTimestampHasOffset_shouldReadItsLocalTimeAsUtc() throws IOException {
+        Transaction transaction = read("{\"timestamp\":\"2018-08-31T07:52:52.521+02:00\",\"amount\":10}");
+
+        assertThat(transaction.getTimestamp(), equalTo(Instant.parse("2018-08-31T07:52:52.521Z").toEpochMilli()));
+    }
+
+    @Test
+    public void deserialize_whenList_shouldReadEveryTransaction() throws IOException {
+        List<Transaction> transactions = objectMapper.readValue(
+                "[{\"amount\":1,\"timestamp\":\"2018-08-31T05:52:52.521Z\"},{\"amount\":2.5,\"timestamp\":\"2018-08-31T05:52:53.521Z\"}]",
+                new TypeReference<List<Transaction>>(){});
+
+        assertThat(transactions, contains(hasProperty("amountInCents", equalTo(100L)), hasProperty("amountInCents", equalTo(250L))));
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void deserialize_whenTimestampIsMalformed_shouldThrowInvalidFormatException() throws IOException {
+        read("{\"amount\":\"3.288\",\"timestamp\":\"17-10-1988\"}");
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void deserialize_whenAmountIsOutOfRange_shouldThrowInvalidFormatException() throws IOException {
+        read("{\"amount\":\"1e30\",\"timestamp\":\"2018-08-31T05:52:52.521Z\"}");
+    }
+
+    @Test(expected = UnrecognizedPropertyException.class)
+    public void deserialize_whenUnknownField_shouldThrowUnrecognizedPropertyException() throws IOException {
+        read("{\"test\":\"test\"}");
+    }
+
+    @Test(expected = MismatchedInputException.class)
+    public void deserialize_whenFieldIsMissing_shouldThrowMismatchedInputException() throws IOException {
+        read("{\"amount\":\"3.288\"}");
+    }
+
+    @Test(expected = MismatchedInputException.class)
+    public void deserialize_whenNotAnObject_shouldThrowMismatchedInputException() throws IOException {
+        read("[1, 2]");
+    }
+
+    private Transaction read(String json) throws IOException {
+        return objectMapper.readValue(json, Transaction.class);
+    }
+
+}
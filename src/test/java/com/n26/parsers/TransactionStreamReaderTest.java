@@ -0,0 +1,207 @@
+package com.n26.parsers;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.n26.entities.BatchResult;
+import com.n26.persistence.MappedTransactionLog;
+import com.n26.services.TransactionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TransactionStreamReaderTest {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TransactionService transactionService;
+
+    private TransactionStreamReader transactionStreamReader;
+
+    @Before
+    public void init(){
+        transactionService = new TransactionService();
+        transactionService.init();
+        transactionStreamReader = new TransactionStreamReader(new ObjectMapper());
+    }
+
+    @Test
+    public void read_whenLinesHaveMixedTimestamps_shouldCountEachOutcomeAndAggregateAccepted() throws IOException {
+        Instant now = Instant.now();
+        String body = line("50.00", now) + "\n"
+                + "{\"timestamp\":\"" + format(now.minusSeconds(10)) + "\",\"amount\":100.5}\n"
+                + line("12.21", now.minusSeconds(61)) + "\n"
+                + line("7.00", now.plusSeconds(120)) + "\n";
+
+        BatchResult result = read(body);
+
+        assertThat(result, allOf(
+                hasProperty("accepted", equalTo(2L)),
+                hasProperty("tooOld", equalTo(1L)),
+                hasProperty("future", equalTo(1L))
+        ));
+        assertThat(transactionService.runStatistics(), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("150.50"))),
+                hasProperty("count", equalTo(2L))
+        ));
+    }
+
+    @Test
+    public void read_whenLineIsMalformed_shouldKeepEarlierLinesInEveryAggregate() throws IOException {
+        Path directory = folder.getRoot().toPath();
+
+        try(MappedTransactionLog log = new MappedTransactionLog(directory, 1 << 16, 10_000, 1, false, Clock.systemUTC())) {
+            TransactionService service = new TransactionService();
+            service.setTransactionLog(log);
+            service.init();
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            service.bindTo(registry);
+
+            String body = "{\"amount\":\"50.00\",\"timestamp\":\"" + format(Instant.now()) + "\",\"key\":\"merchant-1\"}\n"
+                    + line("abc", Instant.now()) + "\n";
+            try {
+                transactionStreamReader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), service.newBatch());
+                fail();
+            } catch(InvalidFormatException e) {
+                // the second line
+            }
+
+            assertEquals(1L, service.runStatistics().getCount());
+            assertEquals(1L, service.runStatistics("merchant-1").getCount());
+            assertEquals(1.0, registry.get("transactions.received").tag("outcome", "accepted").functionCounter().count(), 0.0);
+        }
+
+        try(MappedTransactionLog log = new MappedTransactionLog(directory, 1 << 16, 10_000, 1, false, Clock.systemUTC())) {
+            TransactionService service = new TransactionService();
+            service.setTransactionLog(log);
+            service.init();
+
+            assertEquals(1L, service.runStatistics().getCount());
+        }
+    }
+
+    @Test
+    public void feed_whenBodyIsSplitAnywhere_shouldReadTheSameTransactions() throws IOException {
+        Instant now = Instant.now();
+        byte[] body = (line("50.00", now) + "\n"
+                + "{\"timestamp\":\"" + format(now.minusSeconds(10)) + "\",\"amount\":100.5,\"key\":\"merchant-1\"}\n"
+                + line("12.21", now.minusSeconds(61)) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        for(int split = 0; split <= body.length; split++){
+            transactionService.deleteTransactions();
+            TransactionFeed feed = transactionStreamReader.feed(transactionService.newBatch());
+            feed.feed(ByteBuffer.wrap(body, 0, split));
+            feed.feed(ByteBuffer.wrap(body, split, body.length - split));
+
+            BatchResult result = feed.complete();
+
+            assertThat(result, allOf(
+                    hasProperty("accepted", equalTo(2L)),
+                    hasProperty("tooOld", equalTo(1L))
+            ));
+            assertThat(transactionService.runStatistics().getSum(), equalTo(new BigDecimal("150.50")));
+            assertEquals(1L, transactionService.runStatistics("merchant-1").getCount());
+        }
+    }
+
+    @Test
+    public void feed_whenBodyEndsWithinATransaction_shouldThrowAndKeepEarlierLines() throws IOException {
+        TransactionFeed feed = transactionStreamReader.feed(transactionService.newBatch());
+        feed.feed(ByteBuffer.wrap((line("50.00", Instant.now()) + "\n{\"amount\":\"1.00\"").getBytes(StandardCharsets.UTF_8)));
+
+        try {
+            feed.complete();
+            fail();
+        } catch(JsonParseException e) {
+            // the second line is cut
+        }
+
+        assertEquals(1L, transactionService.runStatistics().getCount());
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void read_whenInvalidTimestamp_shouldThrowInvalidFormatException() throws IOException {
+        read("{\"amount\":\"3.288\",\"timestamp\":\"17-10-1988\"}");
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void read_whenInvalidAmount_shouldThrowInvalidFormatException() throws IOException {
+        read(line("abc", Instant.now()));
+    }
+
+    @Test(expected = UnrecognizedPropertyException.class)
+    public void read_whenUnknownProperty_shouldThrowUnrecognizedPropertyException() throws IOException {
+        read("{\"test\": \"test\"}");
+    }
+
+    @Test(expected = MismatchedInputException.class)
+    public void read_whenPropertyMissing_shouldThrowMismatchedInputException() throws IOException {
+        read("{\"amount\":\"3.288\"}");
+    }
+
+    /**
+     * Allocation figures of the streaming path, measured on the reading thread once the code is warm:
+     * the whole body of 100k transactions is folded with a constant number of allocations (the parser,
+     * its buffers and one bucket per second and flush), well under a byte per transaction.
+     */
+    @Test
+    public void read_whenBodyIsLarge_shouldNotAllocatePerTransaction() throws IOException {
+        int transactions = 100000;
+        StringBuilder body = new StringBuilder();
+        Instant now = Instant.now();
+        for(int i = 0; i < transactions; i++){
+            body.append(line(i % 1000 + "." + i % 100, now.minusMillis(i % 5000))).append('\n');
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        for(int i = 0; i < 5; i++){
+            transactionStreamReader.read(new ByteArrayInputStream(bytes), transactionService.newBatch());
+        }
+
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        BatchResult result = transactionStreamReader.read(input, transactionService.newBatch());
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertThat(result.getAccepted(), equalTo((long) transactions));
+        assertThat((double) allocated / transactions, lessThan(1.0));
+    }
+
+    private BatchResult read(String body) throws IOException {
+        return transactionStreamReader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), transactionService.newBatch());
+    }
+
+    private static String line(String amount, Instant timestamp) {
+        return "{\"amount\":\"" + amount + "\",\"timestamp\":\"" + format(timestamp) + "\"}";
+    }
+
+    private static String format(Instant timestamp) {
+        return TIMESTAMP_FORMATTER.format(timestamp);
+    }
+
+}
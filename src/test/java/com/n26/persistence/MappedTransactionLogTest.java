@@ -0,0 +1,127 @@
+package com.n26.persistence;
+
+import com.n26.time.MutableClock;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class MappedTransactionLogTest {
+
+    private static final int SEGMENT_SIZE = 64 * MappedTransactionLog.RECORD_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+
+    @Test
+    public void replay_whenLogIsReopened_shouldReturnAppendedRecords() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long now = clock.millis();
+
+        try(MappedTransactionLog log = open(directory, false)) {
+            log.append(now, 1221);
+            log.append(now - 1000, -50);
+        }
+
+        try(MappedTransactionLog log = open(directory, false)) {
+            assertThat(replay(log, Long.MIN_VALUE), contains(new long[]{now, 1221}, new long[]{now - 1000, -50}));
+        }
+    }
+
+    @Test
+    public void append_whenSegmentIsFull_shouldRotateToNewSegment() throws IOException {
+        try(MappedTransactionLog log = open(folder.getRoot().toPath(), false)) {
+            for(int i = 1; i <= 100; i++){
+                log.append(clock.millis(), i);
+            }
+
+            assertEquals(2L, segmentCount());
+            assertEquals(100, replay(log, Long.MIN_VALUE).size());
+        }
+    }
+
+    @Test
+    public void replay_whenSegmentsAreOlderThanRequested_shouldSkipThem() throws IOException {
+        try(MappedTransactionLog log = open(folder.getRoot().toPath(), false)) {
+            log.append(clock.millis(), 1);
+            clock.advance(Duration.ofMinutes(2));
+            log.append(clock.millis(), 2);
+
+            List<long[]> records = replay(log, clock.millis() - 60_000);
+
+            assertThat(records, contains(new long[]{clock.millis(), 2}));
+        }
+    }
+
+    @Test
+    public void expire_whenSegmentsOnlyHoldOldRecords_shouldDeleteThem() throws IOException {
+        try(MappedTransactionLog log = open(folder.getRoot().toPath(), false)) {
+            log.append(clock.millis(), 1);
+            clock.advance(Duration.ofMinutes(2));
+            log.append(clock.millis(), 2);
+            clock.advance(Duration.ofMinutes(2));
+            log.append(clock.millis(), 3);
+
+            log.expire(clock.millis() - 60_000);
+
+            assertEquals(2L, segmentCount());
+            assertThat(replay(log, Long.MIN_VALUE), hasSize(2));
+        }
+    }
+
+    @Test
+    public void truncate_whenLogHasRecords_shouldDeleteEverySegment() throws IOException {
+        try(MappedTransactionLog log = open(folder.getRoot().toPath(), false)) {
+            log.append(clock.millis(), 1);
+
+            log.truncate();
+
+            assertEquals(0L, segmentCount());
+            assertThat(replay(log, Long.MIN_VALUE), empty());
+
+            log.append(clock.millis(), 2);
+            assertThat(replay(log, Long.MIN_VALUE), contains(new long[]{clock.millis(), 2}));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void sync_whenSynchronous_shouldReturnOnceRecordIsFlushed() throws IOException {
+        try(MappedTransactionLog log = open(folder.getRoot().toPath(), true)) {
+            log.sync(log.append(clock.millis(), 1));
+            log.sync(log.append(clock.millis(), 2));
+
+            assertEquals(2, replay(log, Long.MIN_VALUE).size());
+        }
+    }
+
+    private MappedTransactionLog open(Path directory, boolean synchronous) {
+        return new MappedTransactionLog(directory, SEGMENT_SIZE, 10_000, 1, synchronous, clock);
+    }
+
+    private long segmentCount() throws IOException {
+        try(Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    private static List<long[]> replay(TransactionLog log, long fromMillis) {
+        List<long[]> records = new ArrayList<>();
+        log.replay(fromMillis, (timestamp, amountInCents) -> records.add(new long[]{timestamp, amountInCents}));
+        return records;
+    }
+
+}
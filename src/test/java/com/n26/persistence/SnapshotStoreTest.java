@@ -0,0 +1,51 @@
+package com.n26.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void load_whenSnapshotWasSaved_shouldReadLatestOne(){
+        Path file = folder.getRoot().toPath().resolve("statistics.snapshot");
+        SnapshotStore store = new SnapshotStore(file);
+        AtomicLong value = new AtomicLong();
+
+        store.save(output -> output.writeLong(1));
+        store.save(output -> output.writeLong(2));
+
+        assertTrue(store.load(input -> value.set(input.readLong())));
+        assertEquals(2L, value.get());
+        assertFalse(Files.exists(file.resolveSibling("statistics.snapshot.tmp")));
+    }
+
+    @Test
+    public void load_whenNoSnapshot_shouldReturnFalse(){
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath().resolve("missing/statistics.snapshot"));
+
+        assertFalse(store.load(input -> input.readLong()));
+    }
+
+    @Test
+    public void delete_whenSnapshotWasSaved_shouldRemoveIt(){
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath().resolve("statistics.snapshot"));
+        store.save(output -> output.writeLong(1));
+
+        store.delete();
+
+        assertFalse(store.load(input -> input.readLong()));
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.n26.services;
+
+import com.n26.entities.KeyStatistic;
+import com.n26.entities.Statistic;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class KeyedStatisticsTest {
+
+    private static final long NOW = 1535694772L;
+
+    @Test
+    public void statistic_whenKeyHasTransactions_shouldAggregateThemOverTheWindow(){
+        KeyedStatistics statistics = new KeyedStatistics(4);
+        statistics.add("merchant-1", NOW - 70, 1000);
+        statistics.add("merchant-1", NOW - 30, 500);
+        statistics.add("merchant-1", NOW, 1500);
+        statistics.add("merchant-2", NOW, 9900);
+
+        assertThat(statistics.statistic("merchant-1", NOW), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("20.00"))),
+                hasProperty("count", equalTo(2L)),
+                hasProperty("max", equalTo(new BigDecimal("15.00"))),
+                hasProperty("min", equalTo(new BigDecimal("5.00")))
+        ));
+        assertThat(statistics.statistic("merchant-3", NOW), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("0.00"))),
+                hasProperty("count", equalTo(0L))
+        ));
+    }
+
+    @Test
+    public void top_whenRankedBySum_shouldReturnLargestKeysFirst(){
+        KeyedStatistics statistics = new KeyedStatistics(8);
+        statistics.add("a", NOW, 100);
+        statistics.add("b", NOW, 300);
+        statistics.add("c", NOW, 200);
+        statistics.add("c", NOW, 200);
+
+        List<KeyStatistic> top = statistics.top(KeyRanking.SUM, 2, NOW);
+
+        assertThat(top, contains(hasProperty("key", equalTo("c")), hasProperty("key", equalTo("b"))));
+        assertThat(statistics.top(KeyRanking.COUNT, 1, NOW), contains(hasProperty("key", equalTo("c"))));
+        assertThat(statistics.top(KeyRanking.MAX, 1, NOW), contains(hasProperty("key", equalTo("b"))));
+    }
+
+    @Test
+    public void add_whenCapacityIsReached_shouldKeepHeavyHitters(){
+        KeyedStatistics statistics = new KeyedStatistics(4);
+        for(int i = 0; i < 1000; i++){
+            statistics.add("heavy-" + i % 2, NOW, 100);
+            statistics.add("light-" + i, NOW, 1);
+        }
+
+        assertEquals(4, statistics.size());
+        assertThat(statistics.evictions(), greaterThan(0L));
+        assertEquals(500L, statistics.statistic("heavy-0", NOW).getCount());
+        assertEquals(500L, statistics.statistic("heavy-1", NOW).getCount());
+        assertThat(statistics.top(KeyRanking.SUM, 2, NOW), contains(hasProperty("key", equalTo("heavy-0")), hasProperty("key", equalTo("heavy-1"))));
+    }
+
+    @Test
+    public void expire_whenKeysAreIdle_shouldDropThemAndKeepTheOthersReachable(){
+        KeyedStatistics statistics = new KeyedStatistics(64);
+        for(int i = 0; i < 64; i++){
+            statistics.add("key-" + i, i % 2 == 0 ? NOW - 60 : NOW, i + 1);
+        }
+
+        statistics.expire(NOW);
+
+        assertEquals(32, statistics.size());
+        for(int i = 1; i < 64; i += 2){
+            assertEquals(BigDecimal.valueOf(i + 1, 2), statistics.statistic("key-" + i, NOW).getSum());
+        }
+        assertEquals(0L, statistics.statistic("key-0", NOW).getCount());
+    }
+
+    @Test
+    public void add_whenKeysChurn_shouldMatchExactCountsOfTrackedKeys(){
+        KeyedStatistics statistics = new KeyedStatistics(16);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+
+        for(int i = 0; i < 20_000; i++){
+            String key = "key-" + random.nextInt(64);
+            statistics.add(key, NOW, 1);
+            exact.merge(key, 1L, Long::sum);
+
+            if(i % 1000 == 0){
+                statistics.expire(NOW);
+            }
+        }
+
+        assertEquals(16, statistics.size());
+        for(KeyStatistic top : statistics.top(KeyRanking.COUNT, 16, NOW)){
+            Statistic statistic = statistics.statistic(top.getKey(), NOW);
+            assertEquals(top.getStatistic(), statistic);
+            assertThat(statistic.getCount(), lessThanOrEqualTo(exact.get(top.getKey())));
+        }
+    }
+
+}
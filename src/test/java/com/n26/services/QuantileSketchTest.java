@@ -0,0 +1,72 @@
+package com.n26.services;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void quantile_whenAmountsAreSmall_shouldBeExact(){
+        QuantileSketch sketch = sketchOf(LongStream.rangeClosed(1, 20).toArray());
+
+        assertEquals(10L, sketch.quantile(0.50));
+        assertEquals(19L, sketch.quantile(0.95));
+        assertEquals(20L, sketch.quantile(0.99));
+    }
+
+    @Test
+    public void quantile_whenAmountsAreSpread_shouldStayWithinRelativeErrorBound(){
+        long[] amounts = new Random(42).longs(100_000, 1, 100_000_000_00L).sorted().toArray();
+        QuantileSketch sketch = sketchOf(amounts);
+
+        for(double quantile : new double[]{0.01, 0.50, 0.95, 0.99, 1.0}){
+            long exact = amounts[(int) Math.ceil(quantile * amounts.length) - 1];
+            long estimate = sketch.quantile(quantile);
+
+            assertTrue(quantile + ": " + estimate + " vs " + exact, Math.abs(estimate - exact) <= exact / 64 + 1);
+        }
+    }
+
+    @Test
+    public void quantile_whenAmountsAreNegative_shouldOrderThemBeforePositiveOnes(){
+        QuantileSketch sketch = sketchOf(-5000, -10, 0, 10, 5000);
+
+        assertEquals(-5000L, sketch.quantile(0.2), 5000 / 64);
+        assertEquals(-10L, sketch.quantile(0.4));
+        assertEquals(0L, sketch.quantile(0.6));
+        assertEquals(5000L, sketch.quantile(1.0), 5000 / 64);
+    }
+
+    @Test
+    public void merge_whenSketchesAreMerged_shouldAddTheirCounts(){
+        QuantileSketch sketch = sketchOf(1, 2, 3);
+
+        sketch.merge(sketchOf(4, 5, 6, 7));
+
+        assertEquals(4L, sketch.quantile(0.50));
+        assertEquals(7L, sketch.quantile(1.0));
+    }
+
+    @Test
+    public void quantile_whenEmptyOrCleared_shouldReturnZero(){
+        QuantileSketch sketch = sketchOf(Long.MAX_VALUE, Long.MIN_VALUE);
+
+        sketch.clear();
+
+        assertEquals(0L, sketch.quantile(0.50));
+    }
+
+    private static QuantileSketch sketchOf(long... amounts){
+        QuantileSketch sketch = new QuantileSketch();
+        for(long amount : amounts){
+            sketch.record(amount);
+        }
+        return sketch;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.n26.services;
+
+import com.n26.entities.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class StatisticBroadcasterTest {
+
+    private TransactionService transactionService;
+    private StatisticBroadcaster statisticBroadcaster;
+
+    @Before
+    public void init(){
+        transactionService = new TransactionService();
+        transactionService.init();
+        statisticBroadcaster = new StatisticBroadcaster(transactionService, 10);
+    }
+
+    @Test
+    public void subscribe_whenTicking_shouldPushTheCurrentStatisticEveryTick(){
+        List<ServerSentEvent<String>> events = statisticBroadcaster.subscribe(StatisticWindow.DEFAULT, false)
+                .take(3)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(events.stream().map(ServerSentEvent::data).collect(Collectors.toList()), everyItem(containsString("\"count\":0")));
+        assertEquals(transactionService.getStatisticSnapshot().getEtag(), events.get(0).id());
+        assertEquals(StatisticBroadcaster.EVENT, events.get(0).event());
+    }
+
+    @Test
+    public void subscribe_whenOnlyChanges_shouldSkipRepeatedStatistics(){
+        List<ServerSentEvent<String>> events = statisticBroadcaster.subscribe(StatisticWindow.DEFAULT, true)
+                .take(2)
+                .doOnNext(event -> {
+                    transactionService.addTransaction(new Transaction(1000, System.currentTimeMillis()));
+                    transactionService.refreshStatistics();
+                })
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(events.get(0).data(), containsString("\"count\":0"));
+        assertThat(events.get(1).data(), containsString("\"count\":1"));
+    }
+
+    @Test
+    public void subscribe_whenSubscriberIsSlow_shouldDropIntermediateTicks() throws InterruptedException {
+        BlockingQueue<ServerSentEvent<String>> received = new LinkedBlockingQueue<>();
+        BaseSubscriber<ServerSentEvent<String>> slow = new BaseSubscriber<ServerSentEvent<String>>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<String> event) {
+                received.add(event);
+            }
+        };
+        statisticBroadcaster.subscribe(StatisticWindow.DEFAULT, false).subscribe(slow);
+
+        assertThat(received.poll(5, TimeUnit.SECONDS).data(), containsString("\"count\":0"));
+        for(int i = 1; i <= 3; i++){
+            transactionService.addTransaction(new Transaction(1000, System.currentTimeMillis()));
+            transactionService.refreshStatistics();
+            Thread.sleep(30);
+        }
+
+        slow.request(1);
+        assertThat(received.poll(5, TimeUnit.SECONDS).data(), containsString("\"count\":3"));
+        slow.dispose();
+        assertThat(received, empty());
+    }
+
+}
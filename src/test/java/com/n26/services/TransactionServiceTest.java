@@ -1,30 +1,57 @@
 package com.n26.services;
 
+import com.n26.entities.BatchResult;
 import com.n26.entities.Statistic;
 import com.n26.entities.Transaction;
-import com.n26.exceptions.FutureTransactionException;
-import com.n26.exceptions.OldMessageException;
+import com.n26.entities.TransactionOutcome;
+import com.n26.exceptions.AmountOutOfRangeException;
+import com.n26.exceptions.UnsupportedRankingException;
+import com.n26.exceptions.UnsupportedWindowException;
+import com.n26.persistence.MappedTransactionLog;
+import com.n26.persistence.SnapshotStore;
+import com.n26.persistence.TransactionLog;
+import com.n26.time.CoarseClock;
+import com.n26.time.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.*;
-import static org.hamcrest.core.IsCollectionContaining.hasItem;
-import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 @SpringBootTest
 @RunWith(SpringRunner.class)
 public class TransactionServiceTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Autowired
     private TransactionService transactionService;
 
@@ -34,16 +61,16 @@ public class TransactionServiceTest {
     }
 
     @Test
-    public void addTransaction_whenAddFirstTransaction_transactionListShouldHaveOneItem(){
+    public void addTransaction_whenAddFirstTransaction_statisticsShouldCountOneItem(){
         Transaction transaction = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
 
         transactionService.addTransaction(transaction);
 
-        assertThat(transactionService.getTransactionsList(), allOf(hasItem(transaction), iterableWithSize(1)));
+        assertEquals(1L, transactionService.runStatistics().getCount());
     }
 
     @Test
-    public void addTransaction_whenAddFourTransactions_transactionListShouldHaveFourItems(){
+    public void addTransaction_whenAddFourTransactions_statisticsShouldCountFourItems(){
         Transaction transaction1 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
         Transaction transaction2 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
         Transaction transaction3 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
@@ -54,24 +81,145 @@ public class TransactionServiceTest {
         transactionService.addTransaction(transaction3);
         transactionService.addTransaction(transaction4);
 
-        assertThat(transactionService.getTransactionsList(), allOf(
-                hasItems(transaction1, transaction2, transaction3, transaction4),
-                iterableWithSize(4)
+        assertEquals(4L, transactionService.runStatistics().getCount());
+    }
+
+    @Test
+    public void addTransaction_whenManyThreadsIngestConcurrently_shouldNotLoseTransactions() throws Exception {
+        int threads = 16;
+        int transactionsPerThread = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for(int i = 0; i < threads; i++){
+            writers.add(executor.submit(() -> {
+                start.await();
+                for(int j = 0; j < transactionsPerThread; j++){
+                    transactionService.addTransaction(new Transaction(new BigDecimal("1.00"), LocalDateTime.now(Clock.systemUTC())));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for(Future<?> writer : writers){
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Statistic statistic = transactionService.runStatistics();
+
+        assertThat(statistic, allOf(
+                hasProperty("sum", equalTo(new BigDecimal(threads * transactionsPerThread).setScale(2, BigDecimal.ROUND_HALF_UP))),
+                hasProperty("count", equalTo((long) threads * transactionsPerThread))
         ));
     }
 
-    @Test(expected = OldMessageException.class)
-    public void addTransaction_whenTransactionOlderThan60Seconds_shouldThrowOldMessageException(){
+    @Test
+    public void runStatistics_whenThreadsIngestConcurrently_shouldNeverSeeHalfAppliedTransactions() throws Exception {
+        int threads = 4;
+        int transactionsPerThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for(int i = 0; i < threads; i++){
+            writers.add(executor.submit(() -> {
+                for(int j = 0; j < transactionsPerThread; j++){
+                    transactionService.addTransaction(new Transaction(new BigDecimal("1.00"), LocalDateTime.now(Clock.systemUTC())));
+                }
+                return null;
+            }));
+        }
+
+        for(Future<?> writer : writers){
+            while(!writer.isDone()){
+                Statistic statistic = transactionService.runStatistics();
+                assertThat(statistic.getSum(), equalTo(new BigDecimal(statistic.getCount()).setScale(2, BigDecimal.ROUND_HALF_UP)));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void addTransaction_whenTransactionOlderThan60Seconds_shouldReturnTooOld(){
         Transaction transaction = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()).minusSeconds(61));
 
-        transactionService.addTransaction(transaction);
+        assertEquals(TransactionOutcome.TOO_OLD, transactionService.addTransaction(transaction));
+        assertEquals(0L, transactionService.runStatistics().getCount());
     }
 
-    @Test(expected = FutureTransactionException.class)
-    public void addTransaction_whenTransactionDateIsInFuture_shouldThrowFutureTransactionException(){
+    @Test
+    public void addTransaction_whenTransactionDateIsInFuture_shouldReturnFuture(){
         Transaction transaction = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()).plusMinutes(2));
 
-        transactionService.addTransaction(transaction);
+        assertEquals(TransactionOutcome.FUTURE, transactionService.addTransaction(transaction));
+        assertEquals(0L, transactionService.runStatistics().getCount());
+    }
+
+    @Test(expected = AmountOutOfRangeException.class)
+    public void addTransaction_whenBucketSumOverflows_shouldThrowAmountOutOfRangeException(){
+        BigDecimal amount = BigDecimal.valueOf(Long.MAX_VALUE, 2);
+        LocalDateTime now = LocalDateTime.now(Clock.systemUTC());
+
+        transactionService.aggregate(new Transaction(amount, now));
+        transactionService.aggregate(new Transaction(amount, now));
+    }
+
+    @Test
+    public void addTransaction_whenOnlyTheSumOfItsKeyOverflows_shouldStillCountAndLogIt(){
+        TransactionLog transactionLog = mock(TransactionLog.class);
+        TransactionService service = new TransactionService();
+        service.setTransactionLog(transactionLog);
+        service.init();
+        long now = System.currentTimeMillis();
+
+        service.addTransaction(new Transaction(-Long.MAX_VALUE / 2, now, null));
+        service.addTransaction(new Transaction(Long.MAX_VALUE - 10, now, "merchant-1"));
+
+        assertEquals(TransactionOutcome.ACCEPTED, service.addTransaction(new Transaction(100, now, "merchant-1")));
+        assertEquals(3L, service.runStatistics().getCount());
+        assertEquals(1L, service.runStatistics("merchant-1").getCount());
+        verify(transactionLog).append(now, 100L);
+    }
+
+    @Test
+    public void runStatistics_whenLargeAmountsAreSummed_shouldKeepExactCents(){
+        transactionService.addTransaction(new Transaction(new BigDecimal("90071992547409.93"), LocalDateTime.now(Clock.systemUTC())));
+        transactionService.addTransaction(new Transaction(new BigDecimal("0.01"), LocalDateTime.now(Clock.systemUTC())));
+
+        Statistic statistic = transactionService.runStatistics();
+
+        assertThat(statistic, allOf(
+                hasProperty("sum", equalTo(new BigDecimal("90071992547409.94"))),
+                hasProperty("avg", equalTo(new BigDecimal("45035996273704.97"))),
+                hasProperty("count", equalTo(2L))
+        ));
+    }
+
+    @Test
+    public void addTransactions_whenBatchHasMixedTimestamps_shouldCountEachOutcomeAndAggregateAccepted(){
+        LocalDateTime now = LocalDateTime.now(Clock.systemUTC());
+
+        BatchResult result = transactionService.addTransactions(Arrays.asList(
+                new Transaction(new BigDecimal("50.00"), now),
+                new Transaction(new BigDecimal("100.50"), now.minusSeconds(10)),
+                new Transaction(new BigDecimal("12.21"), now.minusSeconds(61)),
+                new Transaction(new BigDecimal("7.00"), now.plusMinutes(2))
+        ));
+
+        assertThat(result, allOf(
+                hasProperty("accepted", equalTo(2L)),
+                hasProperty("tooOld", equalTo(1L)),
+                hasProperty("future", equalTo(1L))
+        ));
+        assertThat(transactionService.runStatistics(), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("150.50"))),
+                hasProperty("max", equalTo(new BigDecimal("100.50"))),
+                hasProperty("min", equalTo(new BigDecimal("50.00"))),
+                hasProperty("count", equalTo(2L))
+        ));
     }
 
     @Test
@@ -121,7 +269,7 @@ public class TransactionServiceTest {
 
     @Test
     public void runStatistics_whenThereIsAnTransactionOlderThan60Seconds_shouldReturnOnlyStatisticsFromLastMinuteTransactions(){
-        transactionService.getTransactionsList().add(new Transaction(new BigDecimal(50.00), LocalDateTime.now(Clock.systemUTC()).minusSeconds(80)));
+        transactionService.aggregate(new Transaction(new BigDecimal(50.00), LocalDateTime.now(Clock.systemUTC()).minusSeconds(80)));
 
         transactionService.addTransaction(new Transaction(new BigDecimal(115.80), LocalDateTime.now(Clock.systemUTC())));
         transactionService.addTransaction(new Transaction(new BigDecimal(12.21), LocalDateTime.now(Clock.systemUTC())));
@@ -130,7 +278,7 @@ public class TransactionServiceTest {
 
         assertThat(statistic, allOf(
                 hasProperty("sum", equalTo(new BigDecimal(128.01).setScale(2, BigDecimal.ROUND_HALF_UP))),
-                hasProperty("avg", equalTo(new BigDecimal(64.00).setScale(2, BigDecimal.ROUND_HALF_UP))),
+                hasProperty("avg", equalTo(new BigDecimal("64.01"))),
                 hasProperty("max", equalTo(new BigDecimal(115.80).setScale(2, BigDecimal.ROUND_HALF_UP))),
                 hasProperty("min", equalTo(new BigDecimal(12.21).setScale(2, BigDecimal.ROUND_HALF_UP))),
                 hasProperty("count", equalTo(2L))
@@ -139,7 +287,7 @@ public class TransactionServiceTest {
 
     @Test
     public void runStatistics_whenThereIsAnTransaction1MinuteAhead_shouldReturnOnlyStatisticsFromLastMinuteTransactions(){
-        transactionService.getTransactionsList().add(new Transaction(new BigDecimal(50.00), LocalDateTime.now(Clock.systemUTC()).plusSeconds(80)));
+        transactionService.aggregate(new Transaction(new BigDecimal(50.00), LocalDateTime.now(Clock.systemUTC()).plusSeconds(80)));
 
         transactionService.addTransaction(new Transaction(new BigDecimal(115.80), LocalDateTime.now(Clock.systemUTC())));
         transactionService.addTransaction(new Transaction(new BigDecimal(12.21), LocalDateTime.now(Clock.systemUTC())));
@@ -148,7 +296,7 @@ public class TransactionServiceTest {
 
         assertThat(statistic, allOf(
                 hasProperty("sum", equalTo(new BigDecimal(128.01).setScale(2, BigDecimal.ROUND_HALF_UP))),
-                hasProperty("avg", equalTo(new BigDecimal(64.00).setScale(2, BigDecimal.ROUND_HALF_UP))),
+                hasProperty("avg", equalTo(new BigDecimal("64.01"))),
                 hasProperty("max", equalTo(new BigDecimal(115.80).setScale(2, BigDecimal.ROUND_HALF_UP))),
                 hasProperty("min", equalTo(new BigDecimal(12.21).setScale(2, BigDecimal.ROUND_HALF_UP))),
                 hasProperty("count", equalTo(2L))
@@ -156,7 +304,361 @@ public class TransactionServiceTest {
     }
 
     @Test
-    public void deleteTransactions_whenHappyPath_shouldDeleteTransactionsList(){
+    public void runStatistics_whenWindowHoldsTransactions_shouldEstimatePercentiles(){
+        LocalDateTime now = LocalDateTime.now(Clock.systemUTC());
+        List<Transaction> transactions = new ArrayList<>();
+        for(int amount = 1; amount <= 100; amount++){
+            transactions.add(new Transaction(new BigDecimal(amount), now));
+        }
+        transactionService.addTransactions(transactions.subList(0, 50));
+        transactions.subList(50, 100).forEach(transactionService::addTransaction);
+
+        Statistic statistic = transactionService.runStatistics();
+
+        assertThat(statistic.getP50().doubleValue(), closeTo(50, 50 / 64.0));
+        assertThat(statistic.getP95().doubleValue(), closeTo(95, 95 / 64.0));
+        assertThat(statistic.getP99().doubleValue(), closeTo(99, 99 / 64.0));
+    }
+
+    @Test
+    public void runStatistics_whenNoItemsToEvaluate_shouldOmitPercentiles(){
+        String json = new String(transactionService.getStatisticSnapshot().getJson(), StandardCharsets.UTF_8);
+
+        assertThat(json, not(containsString("p50")));
+    }
+
+    @Test
+    public void runStatistics_whenBucketIsReusedByNewerSecond_shouldDiscardExpiredAggregate(){
+        LocalDateTime now = LocalDateTime.now(Clock.systemUTC());
+        transactionService.aggregate(new Transaction(new BigDecimal(50.00), now.minusSeconds(60)));
+
+        transactionService.aggregate(new Transaction(new BigDecimal(12.21), now));
+
+        Statistic statistic = transactionService.runStatistics();
+
+        assertThat(statistic, allOf(
+                hasProperty("sum", equalTo(new BigDecimal(12.21).setScale(2, BigDecimal.ROUND_HALF_UP))),
+                hasProperty("count", equalTo(1L))
+        ));
+    }
+
+    @Test
+    public void refreshStatistics_whenTransactionAdded_shouldPublishNewSnapshot(){
+        StatisticSnapshot before = transactionService.getStatisticSnapshot();
+        transactionService.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(Clock.systemUTC())));
+
+        transactionService.refreshStatistics();
+
+        StatisticSnapshot after = transactionService.getStatisticSnapshot();
+        assertThat(after.getStatistic(), hasProperty("sum", equalTo(new BigDecimal("12.21"))));
+        assertThat(after.getEtag(), not(equalTo(before.getEtag())));
+        assertThat(new String(after.getJson(), StandardCharsets.UTF_8), containsString("\"sum\":\"12.21\""));
+    }
+
+    @Test
+    public void refreshStatistics_whenNothingChanged_shouldKeepSnapshot(){
+        transactionService.refreshStatistics();
+        StatisticSnapshot before = transactionService.getStatisticSnapshot();
+
+        transactionService.refreshStatistics();
+
+        assertThat(transactionService.getStatisticSnapshot(), sameInstance(before));
+    }
+
+    @Test
+    public void refreshStatistics_whenOnlyFinerWindowsMoved_shouldKeepSnapshotsOfCoarserOnes(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        service.addTransaction(new Transaction(1221L, clock.millis(), null));
+        service.refreshStatistics();
+        StatisticSnapshot minute = service.getStatisticSnapshot(StatisticWindow.DEFAULT);
+        StatisticSnapshot hour = service.getStatisticSnapshot(StatisticWindow.parse("1h"));
+
+        clock.advance(Duration.ofSeconds(1));
+        service.refreshStatistics();
+
+        assertThat(service.getStatisticSnapshot(StatisticWindow.DEFAULT), not(sameInstance(minute)));
+        assertThat(service.getStatisticSnapshot(StatisticWindow.parse("1h")), sameInstance(hour));
+    }
+
+    @Test
+    public void deleteTransactions_whenSnapshotHasTransactions_shouldPublishEmptySnapshot(){
+        transactionService.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(Clock.systemUTC())));
+        transactionService.refreshStatistics();
+
+        transactionService.deleteTransactions();
+
+        assertEquals(0L, transactionService.getStatisticSnapshot().getStatistic().getCount());
+    }
+
+    @Test
+    public void runStatistics_whenClockMovesPastTheWindow_shouldExpireTransactions(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        service.addTransaction(new Transaction(new BigDecimal("50.00"), LocalDateTime.now(clock).minusSeconds(30)));
+        service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock)));
+
+        clock.advance(Duration.ofSeconds(30));
+        Statistic statistic = service.runStatistics();
+
+        assertThat(statistic, allOf(
+                hasProperty("sum", equalTo(new BigDecimal("12.21"))),
+                hasProperty("count", equalTo(1L))
+        ));
+    }
+
+    @Test
+    public void refreshStatistics_whenClockMovesPastTheRings_shouldEvictExpiredBuckets(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        service.addTransaction(new Transaction(1221L, clock.millis(), "merchant-1"));
+        service.refreshStatistics();
+        assertThat(service.nonEmptyBucketCount(), greaterThan(0));
+
+        clock.advance(Duration.ofHours(1));
+        service.refreshStatistics();
+
+        assertEquals(0, service.nonEmptyBucketCount());
+        assertEquals(0, service.trackedKeyCount());
+        assertEquals(0L, service.getStatisticSnapshot().getStatistic().getCount());
+    }
+
+    @Test
+    public void newBatch_whenStreamIsSlow_shouldValidateAgainstTheCurrentTimeAndMergeEverySecond(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        TransactionBatch batch = service.newBatch();
+        long first = clock.millis();
+
+        assertEquals(TransactionOutcome.ACCEPTED, batch.add(first, 1000L));
+        clock.advance(Duration.ofMillis(1500));
+        assertEquals(TransactionOutcome.ACCEPTED, batch.add(clock.millis(), 500L));
+        assertEquals(2L, service.runStatistics().getCount());
+
+        clock.advance(Duration.ofSeconds(59));
+        assertEquals(TransactionOutcome.TOO_OLD, batch.add(first, 2000L));
+        assertThat(batch.complete(), allOf(
+                hasProperty("accepted", equalTo(2L)),
+                hasProperty("tooOld", equalTo(1L))
+        ));
+    }
+
+    @Test
+    public void runStatistics_whenWindowIsGiven_shouldOnlyAggregateTransactionsWithinIt(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        service.addTransaction(new Transaction(new BigDecimal("50.00"), LocalDateTime.now(clock).minusSeconds(30)));
+        service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock)));
+
+        assertEquals(1L, service.runStatistics(StatisticWindow.parse("10s")).getCount());
+        assertEquals(2L, service.runStatistics(StatisticWindow.parse("60s")).getCount());
+
+        clock.advance(Duration.ofMinutes(2));
+
+        assertEquals(0L, service.runStatistics().getCount());
+        assertThat(service.runStatistics(StatisticWindow.parse("5m")), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("62.21"))),
+                hasProperty("count", equalTo(2L))
+        ));
+        assertEquals(2L, service.runStatistics(StatisticWindow.parse("1h")).getCount());
+    }
+
+    @Test
+    public void runStatistics_whenWindowLengthIsPrime_shouldStillSplitItIntoSlots(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService service = new TransactionService(clock, new String[]{"61s"});
+        service.init();
+        service.addTransaction(new Transaction(5000L, clock.millis() - 30_000L, null));
+        service.addTransaction(new Transaction(1221L, clock.millis(), null));
+
+        assertEquals(2L, service.runStatistics(StatisticWindow.parse("61s")).getCount());
+    }
+
+    @Test(expected = UnsupportedWindowException.class)
+    public void getStatisticSnapshot_whenWindowIsNotConfigured_shouldThrowUnsupportedWindowException(){
+        transactionService.getStatisticSnapshot(StatisticWindow.parse("2m"));
+    }
+
+    @Test
+    public void init_whenTransactionLogHoldsTheWindow_shouldRestoreIt(){
+        Path directory = folder.getRoot().toPath();
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+
+        try(MappedTransactionLog log = new MappedTransactionLog(directory, 1 << 16, 10_000, 1, false, clock)) {
+            TransactionService service = new TransactionService(clock);
+            service.setTransactionLog(log);
+            service.init();
+            service.addTransaction(new Transaction(new BigDecimal("50.00"), LocalDateTime.now(clock).minusSeconds(30)));
+            service.addTransactions(Arrays.asList(
+                    new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock)),
+                    new Transaction(new BigDecimal("1.00"), LocalDateTime.now(clock).minusSeconds(90))));
+        }
+
+        clock.advance(Duration.ofSeconds(10));
+
+        try(MappedTransactionLog log = new MappedTransactionLog(directory, 1 << 16, 10_000, 1, false, clock)) {
+            TransactionService service = new TransactionService(clock);
+            service.setTransactionLog(log);
+            service.init();
+
+            assertThat(service.runStatistics(), allOf(
+                    hasProperty("sum", equalTo(new BigDecimal("62.21"))),
+                    hasProperty("count", equalTo(2L))
+            ));
+
+            service.deleteTransactions();
+        }
+
+        try(MappedTransactionLog log = new MappedTransactionLog(directory, 1 << 16, 10_000, 1, false, clock)) {
+            TransactionService service = new TransactionService(clock);
+            service.setTransactionLog(log);
+            service.init();
+
+            assertEquals(0L, service.runStatistics().getCount());
+        }
+    }
+
+    @Test
+    public void init_whenSnapshotWasSaved_shouldRestoreBucketsStillInTheWindow(){
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath().resolve("statistics.snapshot"));
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+
+        TransactionService service = new TransactionService(clock);
+        service.setSnapshotStore(store);
+        service.init();
+        service.addTransaction(new Transaction(new BigDecimal("50.00"), LocalDateTime.now(clock).minusSeconds(50)));
+        service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock)));
+        service.saveSnapshot();
+
+        clock.advance(Duration.ofSeconds(20));
+        TransactionService restarted = new TransactionService(clock);
+        restarted.setSnapshotStore(store);
+        restarted.init();
+
+        assertThat(restarted.runStatistics(), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("12.21"))),
+                hasProperty("count", equalTo(1L)),
+                hasProperty("p50", equalTo(new BigDecimal("12.21")))
+        ));
+        assertEquals(2L, restarted.runStatistics(StatisticWindow.parse("5m")).getCount());
+
+        restarted.deleteTransactions();
+        TransactionService deleted = new TransactionService(clock);
+        deleted.setSnapshotStore(store);
+        deleted.init();
+
+        assertEquals(0L, deleted.runStatistics(StatisticWindow.parse("1h")).getCount());
+    }
+
+    @Test
+    public void mergeStatistics_whenPartialsOfSeveralNodes_shouldComputeStatisticOverAllOfThem() throws IOException {
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService first = new TransactionService(clock);
+        first.init();
+        first.addTransaction(new Transaction(new BigDecimal("10.00"), LocalDateTime.now(clock).minusSeconds(50)));
+        first.addTransaction(new Transaction(new BigDecimal("30.00"), LocalDateTime.now(clock)));
+        TransactionService second = new TransactionService(clock);
+        second.init();
+        second.addTransaction(new Transaction(new BigDecimal("20.00"), LocalDateTime.now(clock)));
+
+        clock.advance(Duration.ofSeconds(20));
+        TransactionService aggregator = new TransactionService(clock);
+        aggregator.init();
+        List<StatisticBucket[][]> partials = Arrays.asList(aggregator.readPartial(first.exportPartial()),
+                aggregator.readPartial(second.exportPartial()), aggregator.localPartial());
+
+        assertThat(aggregator.mergeStatistics(StatisticWindow.DEFAULT, partials), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("50.00"))),
+                hasProperty("count", equalTo(2L)),
+                hasProperty("max", equalTo(new BigDecimal("30.00"))),
+                hasProperty("min", equalTo(new BigDecimal("20.00")))
+        ));
+        assertEquals(3L, aggregator.mergeStatistics(StatisticWindow.parse("5m"), partials).getCount());
+        assertEquals(0L, aggregator.runStatistics(StatisticWindow.parse("5m")).getCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void readPartial_whenTruncated_shouldThrowBeforeMergingAnything() throws IOException {
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        TransactionService node = new TransactionService(clock);
+        node.init();
+        node.addTransaction(new Transaction(new BigDecimal("10.00"), LocalDateTime.now(clock)));
+        byte[] partial = node.exportPartial();
+
+        node.readPartial(Arrays.copyOf(partial, partial.length - 1));
+    }
+
+    @Test
+    public void topStatistics_whenTransactionsHaveKeys_shouldAggregateThemPerKey(){
+        long now = System.currentTimeMillis();
+        transactionService.addTransaction(new Transaction(1000, now, "merchant-1"));
+        transactionService.addTransaction(new Transaction(500, now, null));
+        transactionService.addTransactions(Arrays.asList(
+                new Transaction(2500, now, "merchant-2"),
+                new Transaction(700, now, "merchant-1"),
+                new Transaction(900, now - 90_000, "merchant-3")));
+
+        assertThat(transactionService.runStatistics("merchant-1"), allOf(
+                hasProperty("sum", equalTo(new BigDecimal("17.00"))),
+                hasProperty("count", equalTo(2L))
+        ));
+        assertEquals(4L, transactionService.runStatistics().getCount());
+        assertThat(transactionService.topStatistics(KeyRanking.SUM, 10), contains(
+                hasProperty("key", equalTo("merchant-2")),
+                hasProperty("key", equalTo("merchant-1"))
+        ));
+    }
+
+    @Test(expected = UnsupportedRankingException.class)
+    public void topStatistics_whenLimitIsNotPositive_shouldThrowUnsupportedRankingException(){
+        transactionService.topStatistics(KeyRanking.SUM, 0);
+    }
+
+    @Test
+    public void addTransaction_whenCoarseClockLagsBehind_shouldNotRejectPresentTransactionAsFuture(){
+        MutableClock source = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+
+        try(CoarseClock clock = new CoarseClock(source, TimeUnit.HOURS.toMillis(1))) {
+            TransactionService service = new TransactionService(clock);
+            service.init();
+            source.advance(Duration.ofSeconds(2));
+
+            service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(source)));
+
+            assertEquals(1L, service.runStatistics().getCount());
+        }
+    }
+
+    @Test
+    public void bindTo_whenTransactionsAreReceived_shouldCountThemByOutcome(){
+        MutableClock clock = new MutableClock(Instant.parse("2018-08-31T05:52:52.521Z"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransactionService service = new TransactionService(clock);
+        service.init();
+        service.bindTo(registry);
+
+        service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock)));
+        service.addTransaction(new Transaction(new BigDecimal("12.21"), LocalDateTime.now(clock).minusSeconds(90)));
+        service.addTransactions(Arrays.asList(
+                new Transaction(new BigDecimal("1.00"), LocalDateTime.now(clock).minusSeconds(5)),
+                new Transaction(new BigDecimal("1.00"), LocalDateTime.now(clock).plusSeconds(5))));
+        service.refreshStatistics();
+
+        assertEquals(2.0, registry.get("transactions.received").tag("outcome", "accepted").functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("transactions.received").tag("outcome", "too_old").functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("transactions.received").tag("outcome", "future").functionCounter().count(), 0.0);
+        assertEquals(2.0, registry.get("statistics.window.population").tag("window", "60s").gauge().value(), 0.0);
+        assertThat(registry.get("statistics.buckets").gauge().value(), greaterThan(0.0));
+        assertThat(registry.get("statistics.compute").timer().count(), greaterThan(0L));
+    }
+
+    @Test
+    public void deleteTransactions_whenHappyPath_shouldResetStatistics(){
         Transaction transaction1 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
         Transaction transaction2 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
         Transaction transaction3 = new Transaction(new BigDecimal(123.21), LocalDateTime.now(Clock.systemUTC()));
@@ -169,7 +671,7 @@ public class TransactionServiceTest {
 
         transactionService.deleteTransactions();
 
-        assertEquals(0, transactionService.getTransactionsList().size());
+        assertEquals(0L, transactionService.runStatistics().getCount());
 
     }
 }
\ No newline at end of file
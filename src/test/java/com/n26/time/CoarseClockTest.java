@@ -0,0 +1,51 @@
+package com.n26.time;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class CoarseClockTest {
+
+    @Test
+    public void millis_whenSourceDoesNotMove_shouldReturnSourceReadingOfCreation(){
+        MutableClock source = new MutableClock(Instant.ofEpochMilli(1000));
+
+        try(CoarseClock clock = new CoarseClock(source, 1)) {
+            assertEquals(1000L, clock.millis());
+        }
+    }
+
+    @Test
+    public void millis_whenSourceAdvances_shouldFollowWithinTicks() throws InterruptedException {
+        MutableClock source = new MutableClock(Instant.ofEpochMilli(1000));
+
+        try(CoarseClock clock = new CoarseClock(source, 1)) {
+            source.advance(Duration.ofMillis(500));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while(clock.millis() != 1500L && System.nanoTime() < deadline){
+                Thread.sleep(1);
+            }
+
+            assertEquals(1500L, clock.millis());
+        }
+    }
+
+    @Test
+    public void millis_whenSourceGoesBackwards_shouldNotGoBackwards() throws InterruptedException {
+        MutableClock source = new MutableClock(Instant.ofEpochMilli(1000));
+
+        try(CoarseClock clock = new CoarseClock(source, 1)) {
+            source.advance(Duration.ofMillis(-500));
+            Thread.sleep(20);
+
+            assertThat(clock.millis(), greaterThanOrEqualTo(1000L));
+        }
+    }
+
+}